@@ -0,0 +1,67 @@
+package com.jalveo.weatherAPI.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.service.codec.VersionedCacheCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+// Serialización del timeline cacheado en Redis.
+// Línea base (redis-json): RedisSerializer.json() con información de tipo + convertValue al DTO, como el RedisConfig original;
+// smile y json: VersionedCacheCodec con cada formato
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CacheCodecBenchmark {
+
+    @Param({"redis-json", "smile", "json"})
+    public String codec;
+
+    private LocationTimelineDTO timeline;
+    private byte[] encoded;
+    private RedisSerializer<Object> redisJson;
+    private ObjectMapper objectMapper;
+    private VersionedCacheCodec versionedCodec;
+
+    @Setup
+    public void setUp() throws Exception {
+        timeline = new TimelineParser(new SimpleMeterRegistry())
+                .parse(new ByteArrayInputStream(Fixtures.load(Fixtures.TIMELINE_MADRID)));
+        timeline.setFetchedAt(1_770_000_000_000L);
+        redisJson = RedisSerializer.json();
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        if (!"redis-json".equals(codec)) {
+            versionedCodec = new VersionedCacheCodec(codec);
+        }
+        encoded = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        if (versionedCodec == null) {
+            return redisJson.serialize(timeline);
+        }
+        return versionedCodec.encode(timeline);
+    }
+
+    @Benchmark
+    public LocationTimelineDTO decode() throws Exception {
+        if (versionedCodec == null) {
+            return objectMapper.convertValue(redisJson.deserialize(encoded), LocationTimelineDTO.class);
+        }
+        return versionedCodec.decode(encoded, LocationTimelineDTO.class);
+    }
+}
@@ -0,0 +1,40 @@
+package com.jalveo.weatherAPI.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Construcción de llaves de caché en el camino de cada petición (normalizar la ubicación y armar la llave) y
+// extracción del prefijo para las métricas
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CacheKeyBenchmark {
+
+    @Param({"Madrid", "San Sebastián de los Reyes"})
+    public String city;
+
+    @Param({"ES", "España"})
+    public String country;
+
+    @Benchmark
+    public String alias() {
+        return LocationResolver.alias(city, country);
+    }
+
+    @Benchmark
+    public String timelineKey() {
+        return WeatherService.timelineKey(LocationResolver.alias(city, country));
+    }
+
+    @Benchmark
+    public String keyPrefix() {
+        return CacheMetrics.prefixOf(WeatherService.timelineKey(LocationResolver.alias(city, country)));
+    }
+}
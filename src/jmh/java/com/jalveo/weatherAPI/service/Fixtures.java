@@ -0,0 +1,25 @@
+package com.jalveo.weatherAPI.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+// Carga las respuestas de Visual Crossing guardadas en src/test/resources/fixtures
+final class Fixtures {
+
+    static final String TIMELINE_MADRID = "/fixtures/timeline-madrid.json";
+
+    private Fixtures() {
+    }
+
+    static byte[] load(String path) {
+        try (InputStream in = Fixtures.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("No se encontró el fixture " + path);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.jalveo.weatherAPI.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.DTOs.Response.MonthWeatherDTO;
+import com.jalveo.weatherAPI.DTOs.Response.TodayWeatherDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Extracción de los DTO de hoy y por días desde los bytes de la respuesta de Visual Crossing.
+// Línea base: el árbol JsonNode completo (con un ObjectMapper nuevo por petición, como hacía el servicio);
+// actual: TimelineParser en streaming + proyecciones de WeatherService
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimelineParseBenchmark {
+
+    private byte[] body;
+    private TimelineParser parser;
+
+    @Setup
+    public void setUp() {
+        body = Fixtures.load(Fixtures.TIMELINE_MADRID);
+        parser = new TimelineParser(new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public TodayWeatherDTO treeModelToday() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        JsonNode root = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+
+        TodayWeatherDTO responseDTO = new TodayWeatherDTO();
+        responseDTO.setCity(root.path("resolvedAddress").asText("Desconocido"));
+        responseDTO.setCountry("ES");
+        responseDTO.setDescription(root.path("description").asText("Sin descripción"));
+        JsonNode today = root.path("days").get(0);
+        responseDTO.setTemp(today.path("temp").asDouble(0.0));
+        responseDTO.setTempMax(today.path("tempmax").asDouble(0.0));
+        responseDTO.setTempMin(today.path("tempmin").asDouble(0.0));
+        responseDTO.setHumidity(today.path("humidity").asDouble(0.0));
+        responseDTO.setConditions(today.path("conditions").asText("Desconocido"));
+        responseDTO.setIcon(today.path("icon").asText(""));
+        responseDTO.setSunrise(today.path("sunrise").asText(""));
+        responseDTO.setSunset(today.path("sunset").asText(""));
+        return responseDTO;
+    }
+
+    @Benchmark
+    public List<MonthWeatherDTO> treeModelMonth() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        JsonNode root = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+        return objectMapper.convertValue(root.path("days"), new TypeReference<>() {
+        });
+    }
+
+    @Benchmark
+    public TodayWeatherDTO streamingToday() throws Exception {
+        LocationTimelineDTO timeline = parser.parse(new ByteArrayInputStream(body));
+        return WeatherService.toTodayWeather(timeline, "ES");
+    }
+
+    @Benchmark
+    public List<MonthWeatherDTO> streamingMonth() throws Exception {
+        LocationTimelineDTO timeline = parser.parse(new ByteArrayInputStream(body));
+        return WeatherService.toMonthWeather(timeline);
+    }
+}
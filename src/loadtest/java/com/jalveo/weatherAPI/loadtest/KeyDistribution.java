@@ -0,0 +1,54 @@
+package com.jalveo.weatherAPI.loadtest;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Popularidad de las ciudades: uniforme o Zipf (la ciudad de rango k se pide con probabilidad ∝ 1/k^s).
+// Zipf se muestrea con búsqueda binaria sobre la distribución acumulada, precalculada una vez
+abstract class KeyDistribution {
+
+    abstract int next(SplittableRandom random);
+
+    static KeyDistribution of(LoadTestOptions options) {
+        return options.distribution().equals("zipf")
+                ? new Zipf(options.cities(), options.zipfExponent())
+                : new Uniform(options.cities());
+    }
+
+    private static final class Uniform extends KeyDistribution {
+
+        private final int size;
+
+        Uniform(int size) {
+            this.size = size;
+        }
+
+        @Override
+        int next(SplittableRandom random) {
+            return random.nextInt(size);
+        }
+    }
+
+    private static final class Zipf extends KeyDistribution {
+
+        private final double[] cumulative;
+
+        Zipf(int size, double exponent) {
+            cumulative = new double[size];
+            double sum = 0;
+            for (int rank = 1; rank <= size; rank++) {
+                sum += 1.0 / Math.pow(rank, exponent);
+                cumulative[rank - 1] = sum;
+            }
+            for (int i = 0; i < size; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        @Override
+        int next(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.jalveo.weatherAPI.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+// Carga en lazo cerrado: cada hilo hace una petición, espera la respuesta y hace la siguiente.
+// La ciudad sale de la distribución configurada y el endpoint de days-ratio/range-ratio:
+// /{city}/{country} (today), /{city}/{country}/days (days) y /days?from&to (range).
+// Con variant-ratio una parte de las peticiones escribe la ciudad o el país de otra forma, como lo harían
+// clientes distintos: " CIUDAD-7 ", "ciudad-7/Spain" o "ciudad-7, Región/es"
+class LoadDriver {
+
+    private static final String[] COUNTRIES = {"es", "mx", "ar", "co", "cl"};
+    private static final String[] COUNTRY_NAMES = {"Spain", "México", "Argentina", "Colombia", "Chile"};
+
+    private final String baseUrl;
+    private final LoadTestOptions options;
+    private final KeyDistribution distribution;
+    private final HttpClient client;
+
+    LoadDriver(String baseUrl, LoadTestOptions options) {
+        this.baseUrl = baseUrl;
+        this.options = options;
+        this.distribution = KeyDistribution.of(options);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    // Latencias en nanosegundos por endpoint y conteo de respuestas por código de estado
+    static final class Result {
+
+        final Map<String, long[]> latencies = new LinkedHashMap<>();
+        final Map<Integer, Long> statuses = new TreeMap<>();
+        long transportErrors;
+        long elapsedNanos;
+
+        long requests() {
+            return latencies.values().stream().mapToLong(samples -> samples.length).sum();
+        }
+    }
+
+    // Muestras de un hilo; se juntan al final para no compartir nada mientras corre la carga
+    private static final class Samples {
+
+        final Map<String, long[]> values = new LinkedHashMap<>();
+        final Map<String, Integer> sizes = new LinkedHashMap<>();
+
+        void add(String endpoint, long nanos) {
+            long[] array = values.computeIfAbsent(endpoint, e -> new long[1024]);
+            int size = sizes.getOrDefault(endpoint, 0);
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size * 2);
+                values.put(endpoint, array);
+            }
+            array[size] = nanos;
+            sizes.put(endpoint, size + 1);
+        }
+
+        long[] get(String endpoint) {
+            long[] array = values.get(endpoint);
+            return array == null ? new long[0] : Arrays.copyOf(array, sizes.get(endpoint));
+        }
+    }
+
+    Result run(Duration duration, long seed) throws InterruptedException {
+        int threads = options.concurrency();
+        List<Samples> samples = new ArrayList<>(threads);
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder transportErrors = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        for (int i = 0; i < threads; i++) {
+            Samples local = new Samples();
+            samples.add(local);
+            SplittableRandom random = new SplittableRandom(seed + i);
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        String endpoint = pickEndpoint(random);
+                        URI uri = uri(endpoint, random);
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                                    HttpResponse.BodyHandlers.ofByteArray());
+                            local.add(endpoint, System.nanoTime() - begin);
+                            statuses.computeIfAbsent(response.statusCode(), s -> new LongAdder()).increment();
+                        } catch (IOException e) {
+                            transportErrors.increment();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-driver-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+
+        Result result = new Result();
+        result.elapsedNanos = System.nanoTime() - start;
+        result.transportErrors = transportErrors.sum();
+        statuses.forEach((status, count) -> result.statuses.put(status, count.sum()));
+        for (String endpoint : List.of("today", "days", "range")) {
+            long[] merged = samples.stream().map(s -> s.get(endpoint)).flatMapToLong(Arrays::stream).sorted().toArray();
+            if (merged.length > 0) {
+                result.latencies.put(endpoint, merged);
+            }
+        }
+        return result;
+    }
+
+    private String pickEndpoint(SplittableRandom random) {
+        if (random.nextDouble() >= options.daysRatio()) {
+            return "today";
+        }
+        return random.nextDouble() < options.rangeRatio() ? "range" : "days";
+    }
+
+    private URI uri(String endpoint, SplittableRandom random) {
+        int city = distribution.next(random);
+        String path = baseUrl + "/api/weather/" + location(city, random);
+        return switch (endpoint) {
+            case "days" -> URI.create(path + "/days");
+            case "range" -> {
+                // Rangos de 1 a 7 días dentro de los próximos 15, como los que pide un calendario
+                LocalDate from = LocalDate.now().plusDays(random.nextInt(9));
+                LocalDate to = from.plusDays(random.nextInt(7));
+                yield URI.create(path + "/days?from=" + from + "&to=" + to);
+            }
+            default -> URI.create(path);
+        };
+    }
+
+    private String location(int city, SplittableRandom random) {
+        String name = "ciudad-" + city;
+        String country = COUNTRIES[city % COUNTRIES.length];
+        if (options.variantRatio() <= 0 || random.nextDouble() >= options.variantRatio()) {
+            return name + "/" + country;
+        }
+        return switch (random.nextInt(3)) {
+            case 0 -> "%20" + name.toUpperCase() + "%20/" + country;
+            case 1 -> name + "/" + URLEncoder.encode(COUNTRY_NAMES[city % COUNTRIES.length], StandardCharsets.UTF_8);
+            default -> URLEncoder.encode(name + ", Región", StandardCharsets.UTF_8) + "/" + country;
+        };
+    }
+}
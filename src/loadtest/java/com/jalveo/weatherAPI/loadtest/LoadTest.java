@@ -0,0 +1,162 @@
+package com.jalveo.weatherAPI.loadtest;
+
+import com.jalveo.weatherAPI.WeatherApiApplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Prueba de carga de punta a punta: levanta la app contra un stub de Visual Crossing y un sustituto de Redis
+// en el mismo proceso, calienta, mide y muestra throughput, latencias, llamadas a la API externa y aciertos de caché.
+//
+//   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--concurrency=64 --distribution=uniform"
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        try (RespServer redis = new RespServer();
+             StubUpstreamServer upstream = new StubUpstreamServer(options)) {
+
+            // Línea de comandos para que ganen sobre el application.properties del classpath de test
+            Map<String, String> appProperties = new LinkedHashMap<>();
+            appProperties.put("server.port", "0");
+            appProperties.put("spring.data.redis.host", "127.0.0.1");
+            appProperties.put("spring.data.redis.port", String.valueOf(redis.port()));
+            appProperties.put("weather.api.base-url", upstream.baseUrl());
+            appProperties.put("weather.api.key", "loadtest");
+            // Los mismos timeouts que application.properties.example, no los cortos de las pruebas
+            appProperties.put("weather.api.connect-timeout", "5000");
+            appProperties.put("weather.api.read-timeout", "5000");
+            appProperties.put("logging.level.com.jalveo.weatherAPI", "INFO");
+            for (String arg : options.appArgs()) {
+                int eq = arg.indexOf('=');
+                appProperties.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+            String[] appArgs = appProperties.entrySet().stream()
+                    .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                    .toArray(String[]::new);
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(WeatherApiApplication.class)
+                    .run(appArgs)) {
+                String baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+                MeterRegistry registry = context.getBean(MeterRegistry.class);
+                LoadDriver driver = new LoadDriver(baseUrl, options);
+
+                System.out.println("\n=== Prueba de carga ===\n" + options);
+                if (!options.warmup().isZero()) {
+                    System.out.println("Calentando " + options.warmup().toSeconds() + "s...");
+                    driver.run(options.warmup(), options.seed() * 31);
+                }
+
+                long upstreamCalls = upstream.calls();
+                long upstreamErrors = upstream.errors();
+                long upstreamBytes = upstream.bytesSent();
+                long redisCommands = redis.commandCount();
+                Map<String, Double> cacheBefore = cacheGets(registry);
+                resetPeaks();
+
+                System.out.println("Midiendo " + options.duration().toSeconds() + "s...");
+                LoadDriver.Result result = driver.run(options.duration(), options.seed());
+
+                print(result,
+                        upstream.calls() - upstreamCalls,
+                        upstream.errors() - upstreamErrors,
+                        upstream.bytesSent() - upstreamBytes,
+                        redis.commandCount() - redisCommands,
+                        diff(cacheGets(registry), cacheBefore));
+                printJvm();
+            }
+        }
+        System.exit(0);
+    }
+
+    // weather.cache.gets por prefijo|nivel|resultado
+    private static Map<String, Double> cacheGets(MeterRegistry registry) {
+        Map<String, Double> counts = new HashMap<>();
+        for (Counter counter : registry.find("weather.cache.gets").counters()) {
+            String key = counter.getId().getTag("prefix") + '|' + counter.getId().getTag("tier") + '|'
+                    + counter.getId().getTag("result");
+            counts.merge(key, counter.count(), Double::sum);
+        }
+        return counts;
+    }
+
+    private static Map<String, Double> diff(Map<String, Double> after, Map<String, Double> before) {
+        Map<String, Double> result = new HashMap<>();
+        after.forEach((key, value) -> result.put(key, value - before.getOrDefault(key, 0.0)));
+        return result;
+    }
+
+    private static void print(LoadDriver.Result result, long upstreamCalls, long upstreamErrors, long upstreamBytes,
+                              long redisCommands, Map<String, Double> cache) {
+        double seconds = result.elapsedNanos / 1e9;
+        long requests = result.requests();
+
+        System.out.println();
+        System.out.printf("peticiones: %d en %.1fs -> %.0f req/s%n", requests, seconds, requests / seconds);
+        System.out.println("estados: " + result.statuses
+                + (result.transportErrors > 0 ? ", errores de conexión: " + result.transportErrors : ""));
+        System.out.printf("%-8s %9s %9s %9s %9s %9s %9s%n", "endpoint", "n", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+        long[] all = result.latencies.values().stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        result.latencies.forEach((endpoint, samples) -> printLatencies(endpoint, samples));
+        printLatencies("total", all);
+
+        System.out.printf("API externa: %d llamadas (%d errores), %.1f MB, %.1f peticiones por llamada%n",
+                upstreamCalls, upstreamErrors, upstreamBytes / 1e6,
+                upstreamCalls == 0 ? (double) requests : (double) requests / upstreamCalls);
+        for (String prefix : List.of("timeline", "days", "alias")) {
+            double l1Hits = cache.getOrDefault(prefix + "|l1|hit", 0.0);
+            double l2Hits = cache.getOrDefault(prefix + "|l2|hit", 0.0);
+            double l2Misses = cache.getOrDefault(prefix + "|l2|miss", 0.0);
+            double l2Errors = cache.getOrDefault(prefix + "|l2|error", 0.0);
+            // Lecturas resueltas: las que acertaron en L1 más las que llegaron a Redis
+            double lookups = l1Hits + l2Hits + l2Misses + l2Errors;
+            if (lookups == 0) {
+                continue;
+            }
+            System.out.printf("caché %-8s aciertos %.1f%% (L1 %.1f%%, Redis %.1f%%), errores de Redis %.0f%n",
+                    prefix, 100 * (l1Hits + l2Hits) / lookups, 100 * l1Hits / lookups, 100 * l2Hits / lookups, l2Errors);
+        }
+        System.out.println("comandos a Redis: " + redisCommands);
+    }
+
+    // Incluye los hilos del stub y de los clientes, que son los mismos en ambos modos de ejecución
+    private static void resetPeaks() {
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    private static void printJvm() {
+        long heapPeak = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+        System.out.printf("JVM: %d hilos pico, heap pico ~%.0f MB de %.0f MB%n",
+                ManagementFactory.getThreadMXBean().getPeakThreadCount(), heapPeak / 1e6,
+                Runtime.getRuntime().maxMemory() / 1e6);
+    }
+
+    private static void printLatencies(String endpoint, long[] sorted) {
+        if (sorted.length == 0) {
+            return;
+        }
+        System.out.printf("%-8s %9d %9.2f %9.2f %9.2f %9.2f %9.2f%n", endpoint, sorted.length,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
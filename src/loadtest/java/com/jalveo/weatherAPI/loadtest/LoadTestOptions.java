@@ -0,0 +1,102 @@
+package com.jalveo.weatherAPI.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parámetros de la prueba de carga como --nombre=valor. Los que empiezan por --app. se pasan tal cual a la
+// aplicación (por ejemplo --app.weather.upstream.admission.rate-per-second=200)
+record LoadTestOptions(
+        int concurrency,
+        Duration warmup,
+        Duration duration,
+        int cities,
+        String distribution,
+        double zipfExponent,
+        double daysRatio,
+        double rangeRatio,
+        double variantRatio,
+        long seed,
+        long upstreamLatencyMillis,
+        long upstreamJitterMillis,
+        double upstreamErrorRate,
+        int upstreamDays,
+        boolean upstreamHours,
+        List<String> appArgs) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento no válido (se espera --nombre=valor): " + arg);
+            }
+            if (arg.startsWith("--app.")) {
+                appArgs.add("--" + arg.substring("--app.".length()));
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                Integer.parseInt(values.getOrDefault("concurrency", "32")),
+                duration(values.getOrDefault("warmup", "10s")),
+                duration(values.getOrDefault("duration", "30s")),
+                Integer.parseInt(values.getOrDefault("cities", "500")),
+                values.getOrDefault("distribution", "zipf"),
+                Double.parseDouble(values.getOrDefault("zipf-exponent", "1.0")),
+                Double.parseDouble(values.getOrDefault("days-ratio", "0.3")),
+                Double.parseDouble(values.getOrDefault("range-ratio", "0.5")),
+                Double.parseDouble(values.getOrDefault("variant-ratio", "0")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Long.parseLong(values.getOrDefault("upstream-latency-ms", "150")),
+                Long.parseLong(values.getOrDefault("upstream-jitter-ms", "100")),
+                Double.parseDouble(values.getOrDefault("upstream-error-rate", "0")),
+                Integer.parseInt(values.getOrDefault("upstream-days", "15")),
+                Boolean.parseBoolean(values.getOrDefault("upstream-hours", "true")),
+                List.copyOf(appArgs));
+
+        values.keySet().removeAll(List.of("concurrency", "warmup", "duration", "cities", "distribution",
+                "zipf-exponent", "days-ratio", "range-ratio", "variant-ratio", "seed", "upstream-latency-ms", "upstream-jitter-ms",
+                "upstream-error-rate", "upstream-days", "upstream-hours"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Parámetros desconocidos: " + values.keySet());
+        }
+        if (!options.distribution.equals("zipf") && !options.distribution.equals("uniform")) {
+            throw new IllegalArgumentException("La distribución debe ser zipf o uniform");
+        }
+        if (options.concurrency <= 0 || options.cities <= 0) {
+            throw new IllegalArgumentException("concurrency y cities deben ser mayores a 0");
+        }
+        return options;
+    }
+
+    // 30s, 2m, 500ms o un número de segundos
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    @Override
+    public String toString() {
+        return "concurrency=" + concurrency + ", warmup=" + warmup.toSeconds() + "s, duration=" + duration.toSeconds()
+                + "s, cities=" + cities + ", distribution=" + distribution
+                + (distribution.equals("zipf") ? "(s=" + zipfExponent + ")" : "")
+                + ", days-ratio=" + daysRatio + ", range-ratio=" + rangeRatio + ", variant-ratio=" + variantRatio
+                + ", seed=" + seed
+                + "\nupstream: latency=" + upstreamLatencyMillis + "ms+" + upstreamJitterMillis + "ms, error-rate="
+                + upstreamErrorRate + ", days=" + upstreamDays + ", hours=" + upstreamHours
+                + (appArgs.isEmpty() ? "" : "\napp: " + String.join(" ", appArgs));
+    }
+}
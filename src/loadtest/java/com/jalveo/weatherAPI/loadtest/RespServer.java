@@ -0,0 +1,559 @@
+package com.jalveo.weatherAPI.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sustituto de Redis en el mismo proceso que habla RESP2, para las pruebas de carga sin instalar Redis.
+// Solo implementa los comandos que usa CacheService (y el handshake de Lettuce):
+// GET, SET [EX|PX] [NX], MGET, HSET/HMSET, HMGET, HKEYS, HDEL, EXPIRE/PEXPIRE, DEL, INCR, EVAL/EVALSHA de los scripts de
+// liberación del lease y de escritura con token, PUBLISH y SUBSCRIBE. Como Redis, ejecuta un comando a la vez (un único lock)
+class RespServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespServer.class);
+
+    // Los scripts que ejecuta la app: borrar el lease solo si el token sigue siendo el nuestro y escribir
+    // valores solo si ningún token mayor escribió antes
+    private static final String RELEASE_SCRIPT_MARKER = "redis.call('del', KEYS[1])";
+    private static final String FENCED_SET_SCRIPT_MARKER = "tonumber(current) > tonumber(ARGV[1])";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "resp-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private final Map<String, Entry> store = new HashMap<>();
+    private final Map<String, String> scripts = new ConcurrentHashMap<>();
+    private final Map<String, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong commands = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    // Valor de una llave: bytes (string) o hash, con su expiración en milisegundos (0 = sin expiración)
+    private static final class Entry {
+        byte[] value;
+        Map<String, byte[]> hash;
+        long expireAt;
+
+        boolean expired(long now) {
+            return expireAt > 0 && expireAt <= now;
+        }
+    }
+
+    RespServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "resp-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    long commandCount() {
+        return commands.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.execute(() -> new Connection(socket).serve());
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Error aceptando conexión RESP: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private final class Connection {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+            try {
+                this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void serve() {
+            try (socket) {
+                while (running) {
+                    List<byte[]> command = readCommand();
+                    if (command == null) {
+                        return;
+                    }
+                    commands.incrementAndGet();
+                    synchronized (out) {
+                        execute(command);
+                        // Con pipelining se responde en bloque: solo se vacía el buffer cuando no quedan comandos leídos
+                        if (in.available() == 0) {
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // El cliente cerró la conexión
+            } catch (IOException e) {
+                if (running) {
+                    logger.debug("Conexión RESP cerrada: {}", e.getMessage());
+                }
+            } finally {
+                subscribers.values().forEach(members -> members.remove(this));
+            }
+        }
+
+        // Solo arrays de bulk strings, que es lo que envían los clientes
+        private List<byte[]> readCommand() throws IOException {
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            if (first != '*') {
+                throw new IOException("Comando RESP no soportado: " + (char) first);
+            }
+            int count = (int) readNumber();
+            List<byte[]> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$') {
+                    throw new IOException("Se esperaba un bulk string");
+                }
+                int length = (int) readNumber();
+                byte[] arg = in.readNBytes(length);
+                if (arg.length < length) {
+                    throw new EOFException();
+                }
+                in.skipNBytes(2);
+                args.add(arg);
+            }
+            return args;
+        }
+
+        private long readNumber() throws IOException {
+            long value = 0;
+            boolean negative = false;
+            int c;
+            while ((c = in.read()) != '\r') {
+                if (c < 0) {
+                    throw new EOFException();
+                }
+                if (c == '-') {
+                    negative = true;
+                } else {
+                    value = value * 10 + (c - '0');
+                }
+            }
+            in.read();
+            return negative ? -value : value;
+        }
+
+        private void execute(List<byte[]> command) throws IOException {
+            String name = text(command.get(0)).toUpperCase();
+            switch (name) {
+                case "PING" -> simple("PONG");
+                case "CLIENT", "SELECT" -> simple("OK");
+                // Sin HELLO Lettuce negocia RESP2
+                case "HELLO" -> error("ERR unknown command 'HELLO'");
+                case "GET" -> get(command);
+                case "SET" -> set(command);
+                case "MGET" -> mget(command);
+                case "HSET", "HMSET" -> hset(name, command);
+                case "HMGET" -> hmget(command);
+                case "HKEYS" -> hkeys(command);
+                case "HDEL" -> hdel(command);
+                case "EXPIRE" -> expire(command, 1000);
+                case "PEXPIRE" -> expire(command, 1);
+                case "DEL" -> del(command);
+                case "INCR" -> incr(command);
+                case "EVAL" -> eval(text(command.get(1)), command);
+                case "EVALSHA" -> evalSha(command);
+                case "PUBLISH" -> publish(command);
+                case "SUBSCRIBE" -> subscribe(command);
+                case "UNSUBSCRIBE" -> unsubscribe(command);
+                case "FLUSHALL", "FLUSHDB" -> {
+                    synchronized (lock) {
+                        store.clear();
+                    }
+                    simple("OK");
+                }
+                default -> error("ERR unknown command '" + name + "'");
+            }
+        }
+
+        private void get(List<byte[]> command) throws IOException {
+            byte[] value;
+            synchronized (lock) {
+                Entry entry = live(text(command.get(1)));
+                value = entry == null ? null : entry.value;
+            }
+            bulk(value);
+        }
+
+        // SET key value [EX s | PX ms] [NX]
+        private void set(List<byte[]> command) throws IOException {
+            String key = text(command.get(1));
+            long ttlMillis = 0;
+            boolean nx = false;
+            for (int i = 3; i < command.size(); i++) {
+                String option = text(command.get(i)).toUpperCase();
+                switch (option) {
+                    case "EX" -> ttlMillis = Long.parseLong(text(command.get(++i))) * 1000;
+                    case "PX" -> ttlMillis = Long.parseLong(text(command.get(++i)));
+                    case "NX" -> nx = true;
+                    default -> {
+                        error("ERR syntax error");
+                        return;
+                    }
+                }
+            }
+            synchronized (lock) {
+                if (nx && live(key) != null) {
+                    bulk(null);
+                    return;
+                }
+                Entry entry = new Entry();
+                entry.value = command.get(2);
+                entry.expireAt = ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+                store.put(key, entry);
+            }
+            simple("OK");
+        }
+
+        private void mget(List<byte[]> command) throws IOException {
+            List<byte[]> values = new ArrayList<>(command.size() - 1);
+            synchronized (lock) {
+                for (int i = 1; i < command.size(); i++) {
+                    Entry entry = live(text(command.get(i)));
+                    values.add(entry == null ? null : entry.value);
+                }
+            }
+            array(values);
+        }
+
+        private void hset(String name, List<byte[]> command) throws IOException {
+            int added = 0;
+            synchronized (lock) {
+                String key = text(command.get(1));
+                Entry entry = live(key);
+                if (entry == null || entry.hash == null) {
+                    entry = new Entry();
+                    entry.hash = new HashMap<>();
+                    store.put(key, entry);
+                }
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (entry.hash.put(text(command.get(i)), command.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+            }
+            if (name.equals("HMSET")) {
+                simple("OK");
+            } else {
+                integer(added);
+            }
+        }
+
+        private void hmget(List<byte[]> command) throws IOException {
+            List<byte[]> values = new ArrayList<>(command.size() - 2);
+            synchronized (lock) {
+                Entry entry = live(text(command.get(1)));
+                for (int i = 2; i < command.size(); i++) {
+                    values.add(entry == null || entry.hash == null ? null : entry.hash.get(text(command.get(i))));
+                }
+            }
+            array(values);
+        }
+
+        private void hkeys(List<byte[]> command) throws IOException {
+            List<byte[]> fields = new ArrayList<>();
+            synchronized (lock) {
+                Entry entry = live(text(command.get(1)));
+                if (entry != null && entry.hash != null) {
+                    for (String field : entry.hash.keySet()) {
+                        fields.add(field.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            }
+            array(fields);
+        }
+
+        private void hdel(List<byte[]> command) throws IOException {
+            int removed = 0;
+            synchronized (lock) {
+                Entry entry = live(text(command.get(1)));
+                if (entry != null && entry.hash != null) {
+                    for (int i = 2; i < command.size(); i++) {
+                        if (entry.hash.remove(text(command.get(i))) != null) {
+                            removed++;
+                        }
+                    }
+                }
+            }
+            integer(removed);
+        }
+
+        private void expire(List<byte[]> command, long unitMillis) throws IOException {
+            long ttl = Long.parseLong(text(command.get(2))) * unitMillis;
+            synchronized (lock) {
+                Entry entry = live(text(command.get(1)));
+                if (entry == null) {
+                    integer(0);
+                    return;
+                }
+                entry.expireAt = System.currentTimeMillis() + ttl;
+            }
+            integer(1);
+        }
+
+        private void del(List<byte[]> command) throws IOException {
+            int removed = 0;
+            synchronized (lock) {
+                for (int i = 1; i < command.size(); i++) {
+                    String key = text(command.get(i));
+                    if (live(key) != null) {
+                        store.remove(key);
+                        removed++;
+                    }
+                }
+            }
+            integer(removed);
+        }
+
+        private void incr(List<byte[]> command) throws IOException {
+            long value;
+            synchronized (lock) {
+                String key = text(command.get(1));
+                Entry entry = live(key);
+                value = entry == null || entry.value == null ? 1 : Long.parseLong(text(entry.value)) + 1;
+                if (entry == null) {
+                    entry = new Entry();
+                    store.put(key, entry);
+                }
+                entry.value = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            }
+            integer(value);
+        }
+
+        // Spring prueba primero EVALSHA y, con NOSCRIPT, manda el script completo con EVAL
+        private void evalSha(List<byte[]> command) throws IOException {
+            String script = scripts.get(text(command.get(1)));
+            if (script == null) {
+                error("NOSCRIPT No matching script. Please use EVAL.");
+                return;
+            }
+            eval(script, command);
+        }
+
+        // EVAL script numkeys key [key...] arg [arg...]
+        private void eval(String script, List<byte[]> command) throws IOException {
+            scripts.putIfAbsent(sha1(script), script);
+            if (script.contains(FENCED_SET_SCRIPT_MARKER)) {
+                fencedSet(command);
+                return;
+            }
+            if (!script.contains(RELEASE_SCRIPT_MARKER)) {
+                error("ERR solo se soportan los scripts del lease y de escritura con token");
+                return;
+            }
+            String key = text(command.get(3));
+            byte[] token = command.get(4);
+            synchronized (lock) {
+                Entry entry = live(key);
+                if (entry != null && entry.value != null && Arrays.equals(entry.value, token)) {
+                    store.remove(key);
+                    integer(1);
+                    return;
+                }
+            }
+            integer(0);
+        }
+
+        // KEYS[1] = token de la última escritura, KEYS[2..n] = llaves; ARGV[1] = token, ARGV[2] = TTL, ARGV[3..] = valores
+        private void fencedSet(List<byte[]> command) throws IOException {
+            int keys = Integer.parseInt(text(command.get(2)));
+            String fenceKey = text(command.get(3));
+            byte[] token = command.get(3 + keys);
+            long expireAt = System.currentTimeMillis() + Long.parseLong(text(command.get(4 + keys))) * 1000;
+            synchronized (lock) {
+                Entry fence = live(fenceKey);
+                if (fence != null && fence.value != null && Long.parseLong(text(fence.value)) > Long.parseLong(text(token))) {
+                    integer(0);
+                    return;
+                }
+                for (int i = 0; i < keys; i++) {
+                    Entry entry = new Entry();
+                    entry.value = i == 0 ? token : command.get(4 + keys + i);
+                    entry.expireAt = expireAt;
+                    store.put(text(command.get(3 + i)), entry);
+                }
+            }
+            integer(1);
+        }
+
+        private void publish(List<byte[]> command) throws IOException {
+            String channel = text(command.get(1));
+            byte[] message = command.get(2);
+            Set<Connection> targets = subscribers.getOrDefault(channel, Set.of());
+            for (Connection target : targets) {
+                target.push(channel, message);
+            }
+            integer(targets.size());
+        }
+
+        private void subscribe(List<byte[]> command) throws IOException {
+            for (int i = 1; i < command.size(); i++) {
+                String channel = text(command.get(i));
+                subscribers.computeIfAbsent(channel, c -> new CopyOnWriteArraySet<>()).add(this);
+                header('*', 3);
+                bulk("subscribe".getBytes(StandardCharsets.US_ASCII));
+                bulk(command.get(i));
+                integer(i);
+            }
+        }
+
+        private void unsubscribe(List<byte[]> command) throws IOException {
+            List<String> channels = new ArrayList<>();
+            for (int i = 1; i < command.size(); i++) {
+                channels.add(text(command.get(i)));
+            }
+            if (channels.isEmpty()) {
+                subscribers.forEach((channel, members) -> {
+                    if (members.contains(this)) {
+                        channels.add(channel);
+                    }
+                });
+            }
+            for (String channel : channels) {
+                subscribers.getOrDefault(channel, Set.of()).remove(this);
+                header('*', 3);
+                bulk("unsubscribe".getBytes(StandardCharsets.US_ASCII));
+                bulk(channel.getBytes(StandardCharsets.UTF_8));
+                integer(0);
+            }
+        }
+
+        // Mensaje de pub/sub hacia un suscriptor, desde el hilo de la conexión que publica
+        private void push(String channel, byte[] message) {
+            synchronized (out) {
+                try {
+                    header('*', 3);
+                    bulk("message".getBytes(StandardCharsets.US_ASCII));
+                    bulk(channel.getBytes(StandardCharsets.UTF_8));
+                    bulk(message);
+                    out.flush();
+                } catch (IOException e) {
+                    subscribers.getOrDefault(channel, Set.of()).remove(this);
+                }
+            }
+        }
+
+        private void simple(String value) throws IOException {
+            out.write('+');
+            out.write(value.getBytes(StandardCharsets.US_ASCII));
+            out.write('\r');
+            out.write('\n');
+        }
+
+        private void error(String message) throws IOException {
+            out.write('-');
+            out.write(message.getBytes(StandardCharsets.UTF_8));
+            out.write('\r');
+            out.write('\n');
+        }
+
+        private void integer(long value) throws IOException {
+            header(':', value);
+        }
+
+        private void bulk(byte[] value) throws IOException {
+            if (value == null) {
+                header('$', -1);
+                return;
+            }
+            header('$', value.length);
+            out.write(value);
+            out.write('\r');
+            out.write('\n');
+        }
+
+        private void array(List<byte[]> values) throws IOException {
+            header('*', values.size());
+            for (byte[] value : values) {
+                bulk(value);
+            }
+        }
+
+        private void header(char type, long value) throws IOException {
+            out.write(type);
+            out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+            out.write('\r');
+            out.write('\n');
+        }
+    }
+
+    // Llamar con el lock tomado: expira la llave de forma perezosa, como Redis al leerla
+    private Entry live(String key) {
+        Entry entry = store.get(key);
+        if (entry != null && entry.expired(System.currentTimeMillis())) {
+            store.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String sha1(String script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
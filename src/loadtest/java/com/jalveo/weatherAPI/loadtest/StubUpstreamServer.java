@@ -0,0 +1,288 @@
+package com.jalveo.weatherAPI.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Imita la API de timeline de Visual Crossing: /timeline/{ciudad,país}[/{inicio}/{fin}].
+// Responde con el fixture de src/test/resources/fixtures con las fechas movidas a hoy, y permite fijar la
+// latencia, la tasa de errores (500) y el tamaño de la respuesta (días y si incluye las horas).
+// Geocodifica como la API real: las variantes de una misma ciudad ("Madrid", " MADRID ", "Madrid, Región")
+// devuelven el mismo resolvedAddress y las mismas coordenadas. Respeta include= (days, hours, current, alerts)
+// y elements= (campos de cada día, de cada hora y de las condiciones actuales)
+class StubUpstreamServer implements AutoCloseable {
+
+    private static final String FIXTURE = "/fixtures/timeline-madrid.json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final int days;
+    private final boolean hours;
+
+    private final ObjectNode template;
+    private final ArrayNode fixtureDays;
+
+    // Días de la respuesta sin rango (la que pide /{city}/{country} y /days), precalculados para el día actual
+    // y cada combinación de include/elements; a cada petición solo se le antepone la cabecera con su ubicación
+    private volatile LocalDate defaultDate;
+    private final Map<String, byte[]> defaultDays = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    StubUpstreamServer(LoadTestOptions options) throws IOException {
+        this.latencyMillis = options.upstreamLatencyMillis();
+        this.jitterMillis = options.upstreamJitterMillis();
+        this.errorRate = options.upstreamErrorRate();
+        this.days = options.upstreamDays();
+        this.hours = options.upstreamHours();
+
+        this.template = (ObjectNode) loadFixture();
+        this.fixtureDays = (ArrayNode) template.remove("days");
+        for (String field : new String[]{"queryCost", "latitude", "longitude", "resolvedAddress", "address"}) {
+            template.remove(field);
+        }
+        if (!hours) {
+            fixtureDays.forEach(day -> ((ObjectNode) day).remove("hours"));
+        }
+
+        // Un hilo por petición en curso: la latencia simulada no debe limitar la concurrencia del stub
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-upstream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/timeline/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/timeline";
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    long bytesSent() {
+        return bytesSent.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            calls.incrementAndGet();
+            sleep();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                send(exchange, 500, "Stub upstream error".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            // /timeline/{ubicación}[/{inicio}/{fin}]
+            String[] segments = exchange.getRequestURI().getRawPath().substring("/timeline/".length()).split("/");
+            String location = URLDecoder.decode(segments[0], StandardCharsets.UTF_8);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            Set<String> include = list(query.get("include"));
+            Set<String> elements = list(query.get("elements"));
+            byte[] body;
+            if (segments.length >= 3) {
+                LocalDate start = LocalDate.parse(segments[1]);
+                LocalDate end = LocalDate.parse(segments[2]);
+                int count = (int) (end.toEpochDay() - start.toEpochDay() + 1);
+                body = withLocation(location, count, render(start, count, include, elements));
+            } else {
+                body = withLocation(location, days, defaultDays(include, elements));
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            send(exchange, 200, body);
+        }
+    }
+
+    private void sleep() {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytesSent.addAndGet(body.length);
+    }
+
+    private byte[] defaultDays(Set<String> include, Set<String> elements) {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(defaultDate)) {
+            defaultDays.clear();
+            defaultDate = today;
+        }
+        return defaultDays.computeIfAbsent(include + "|" + elements, k -> render(today, days, include, elements));
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    // null si el parámetro no vino: sin filtro, como la API real
+    private static Set<String> list(String value) {
+        return value == null ? null : new TreeSet<>(Arrays.asList(value.split(",")));
+    }
+
+    // {"queryCost":..,"latitude":..,"longitude":..,"resolvedAddress":..,"address":.., + el resto del objeto
+    private byte[] withLocation(String location, int count, byte[] rest) {
+        String place = place(location);
+        // Coordenadas deterministas por lugar; para los nombres del driver (ciudad-N) no hay dos en la misma
+        // celda de 0.01°, así que cada ciudad tiene su propio id canónico en la app
+        int hash = place.hashCode() & 0x7fffffff;
+        double latitude = (hash % 12000) / 100.0 - 60 + 0.0013;
+        double longitude = (hash / 12000 % 36000) / 100.0 - 180 + 0.0021;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(rest.length + 160);
+            out.write(("{\"queryCost\":" + count
+                    + ",\"latitude\":" + String.format(Locale.ROOT, "%.4f", latitude)
+                    + ",\"longitude\":" + String.format(Locale.ROOT, "%.4f", longitude)
+                    + ",\"resolvedAddress\":" + mapper.writeValueAsString(place + ", Stub")
+                    + ",\"address\":" + mapper.writeValueAsString(location)
+                    + ",").getBytes(StandardCharsets.UTF_8));
+            out.write(rest, 1, rest.length - 1);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Primer segmento de "ciudad, región, país" en minúsculas y sin acentos ni espacios sobrantes
+    private static String place(String location) {
+        int comma = location.indexOf(',');
+        String city = (comma < 0 ? location : location.substring(0, comma)).trim().toLowerCase(Locale.ROOT);
+        return Normalizer.normalize(city, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+    }
+
+    // Los días del fixture se repiten en orden a partir de start, con la fecha y el epoch reescritos
+    private byte[] render(LocalDate start, int count, Set<String> include, Set<String> elements) {
+        ObjectNode root = template.deepCopy();
+        ArrayNode out = root.putArray("days");
+        for (int i = 0; i < count; i++) {
+            LocalDate date = start.plusDays(i);
+            ObjectNode day = ((ObjectNode) fixtureDays.get(i % fixtureDays.size())).deepCopy();
+            day.put("datetime", date.toString());
+            day.put("datetimeEpoch", date.atStartOfDay(ZoneId.systemDefault()).toEpochSecond());
+            out.add(day);
+        }
+        project(root, include, elements);
+        try {
+            return mapper.writeValueAsBytes(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // include quita las secciones no pedidas y elements deja solo esos campos en días, horas y condiciones actuales.
+    // La cabecera de ubicación (coordenadas, resolvedAddress...) se devuelve siempre
+    private static void project(ObjectNode root, Set<String> include, Set<String> elements) {
+        if (include != null) {
+            removeUnless(root, "days", include.contains("days"));
+            removeUnless(root, "currentConditions", include.contains("current"));
+            removeUnless(root, "alerts", include.contains("alerts"));
+            removeUnless(root, "stations", include.contains("stations"));
+            root.path("days").forEach(day -> removeUnless((ObjectNode) day, "hours", include.contains("hours")));
+        }
+        if (elements == null) {
+            return;
+        }
+        removeUnless(root, "description", elements.contains("description"));
+        for (JsonNode day : root.path("days")) {
+            retain((ObjectNode) day, elements, "hours");
+            day.path("hours").forEach(hour -> retain((ObjectNode) hour, elements));
+        }
+        if (root.get("currentConditions") instanceof ObjectNode current) {
+            retain(current, elements);
+        }
+    }
+
+    private static void removeUnless(ObjectNode node, String field, boolean keep) {
+        if (!keep) {
+            node.remove(field);
+        }
+    }
+
+    private static void retain(ObjectNode node, Set<String> elements, String... nested) {
+        Set<String> keep = new HashSet<>(elements);
+        keep.addAll(Arrays.asList(nested));
+        node.retain(keep);
+    }
+
+    private JsonNode loadFixture() throws IOException {
+        try (InputStream in = StubUpstreamServer.class.getResourceAsStream(FIXTURE)) {
+            if (in == null) {
+                throw new IllegalStateException("No se encontró el fixture " + FIXTURE);
+            }
+            return mapper.readTree(in);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package com.jalveo.weatherAPI.DTOs.Cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Campo del hash weather:days: un día junto al momento en que se pidió a la API externa.
+// El hash entero se renueva con cada escritura, así que la frescura se decide día a día con fetchedAt
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CachedDayDTO {
+    private TimelineDayDTO day;
+    private long fetchedAt;
+}
@@ -0,0 +1,162 @@
+package com.jalveo.weatherAPI.DTOs.Cache;
+
+import com.jalveo.weatherAPI.DTOs.Response.FieldStatsDTO;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Representación columnar de los días de un timeline: un array primitivo por campo,
+// días ordenados por epoch-day y condiciones/iconos codificados con diccionario.
+// Las agregaciones recorren los arrays sin crear objetos por día.
+public final class DaySeries {
+
+    // Campos numéricos sobre los que se pueden calcular estadísticas
+    public enum Field {
+        TEMP, TEMPMAX, TEMPMIN, HUMIDITY, WINDSPEED;
+
+        public String paramName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Field fromParam(String name) {
+            return Field.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final int[] epochDay;
+    private final double[][] columns;
+    private final String[] conditionsDictionary;
+    private final int[] conditionsCode;
+    private final String[] iconDictionary;
+    private final int[] iconCode;
+
+    private DaySeries(int[] epochDay, double[][] columns, String[] conditionsDictionary, int[] conditionsCode,
+                      String[] iconDictionary, int[] iconCode) {
+        this.epochDay = epochDay;
+        this.columns = columns;
+        this.conditionsDictionary = conditionsDictionary;
+        this.conditionsCode = conditionsCode;
+        this.iconDictionary = iconDictionary;
+        this.iconCode = iconCode;
+    }
+
+    public static DaySeries from(LocationTimelineDTO timeline) {
+        List<TimelineDayDTO> days = timeline.getDays().stream()
+                .filter(day -> day.getDatetime() != null)
+                .sorted((a, b) -> a.getDatetime().compareTo(b.getDatetime()))
+                .toList();
+        int size = days.size();
+
+        int[] epochDay = new int[size];
+        double[][] columns = new double[Field.values().length][size];
+        int[] conditionsCode = new int[size];
+        int[] iconCode = new int[size];
+        Map<String, Integer> conditions = new LinkedHashMap<>();
+        Map<String, Integer> icons = new LinkedHashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            TimelineDayDTO day = days.get(i);
+            epochDay[i] = (int) day.getDatetime().toEpochDay();
+            columns[Field.TEMP.ordinal()][i] = day.getTemp();
+            columns[Field.TEMPMAX.ordinal()][i] = day.getTempmax();
+            columns[Field.TEMPMIN.ordinal()][i] = day.getTempmin();
+            columns[Field.HUMIDITY.ordinal()][i] = day.getHumidity();
+            columns[Field.WINDSPEED.ordinal()][i] = day.getWindspeed();
+            conditionsCode[i] = encode(conditions, day.getConditions());
+            iconCode[i] = encode(icons, day.getIcon());
+        }
+
+        return new DaySeries(epochDay, columns, conditions.keySet().toArray(String[]::new), conditionsCode,
+                icons.keySet().toArray(String[]::new), iconCode);
+    }
+
+    private static int encode(Map<String, Integer> dictionary, String value) {
+        return dictionary.computeIfAbsent(value == null ? "" : value, v -> dictionary.size());
+    }
+
+    public int size() {
+        return epochDay.length;
+    }
+
+    public LocalDate dateAt(int index) {
+        return LocalDate.ofEpochDay(epochDay[index]);
+    }
+
+    // Primer índice con fecha >= from (size() si no hay ninguno)
+    public int lowerBound(LocalDate from) {
+        if (from == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(epochDay, (int) from.toEpochDay());
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Índice exclusivo tras la última fecha <= to
+    public int upperBound(LocalDate to) {
+        if (to == null) {
+            return epochDay.length;
+        }
+        int index = Arrays.binarySearch(epochDay, (int) to.toEpochDay());
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // min/max/media y percentiles 50 y 90 de un campo en [fromIndex, toIndex)
+    public FieldStatsDTO stats(Field field, int fromIndex, int toIndex) {
+        int count = Math.max(0, toIndex - fromIndex);
+        FieldStatsDTO stats = new FieldStatsDTO();
+        stats.setCount(count);
+        if (count == 0) {
+            return stats;
+        }
+
+        double[] sorted = Arrays.copyOfRange(columns[field.ordinal()], fromIndex, toIndex);
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (double value : sorted) {
+            sum += value;
+        }
+        stats.setMin(sorted[0]);
+        stats.setMax(sorted[count - 1]);
+        stats.setMean(sum / count);
+        stats.setP50(percentile(sorted, 0.50));
+        stats.setP90(percentile(sorted, 0.90));
+        return stats;
+    }
+
+    // Percentil con interpolación lineal sobre un array ya ordenado
+    private static double percentile(double[] sorted, double quantile) {
+        double rank = quantile * (sorted.length - 1);
+        int lower = (int) Math.floor(rank);
+        int upper = (int) Math.ceil(rank);
+        return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+    }
+
+    // Número de días por condición en [fromIndex, toIndex)
+    public Map<String, Integer> conditionCounts(int fromIndex, int toIndex) {
+        return counts(conditionsDictionary, conditionsCode, fromIndex, toIndex);
+    }
+
+    // Número de días por icono en [fromIndex, toIndex)
+    public Map<String, Integer> iconCounts(int fromIndex, int toIndex) {
+        return counts(iconDictionary, iconCode, fromIndex, toIndex);
+    }
+
+    private static Map<String, Integer> counts(String[] dictionary, int[] codes, int fromIndex, int toIndex) {
+        int[] counts = new int[dictionary.length];
+        for (int i = fromIndex; i < toIndex; i++) {
+            counts[codes[i]]++;
+        }
+        Map<String, Integer> result = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(dictionary[code], counts[code]);
+            }
+        }
+        return result;
+    }
+}
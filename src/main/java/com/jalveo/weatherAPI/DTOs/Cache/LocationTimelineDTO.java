@@ -0,0 +1,44 @@
+package com.jalveo.weatherAPI.DTOs.Cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+// Timeline canónico de una ubicación: se llena con una sola petición a Visual Crossing
+// y de él se proyectan tanto el clima de hoy como el pronóstico por días.
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LocationTimelineDTO {
+    private String resolvedAddress;
+    // Coordenadas que resolvió Visual Crossing; base del id canónico de la ubicación
+    private Double latitude;
+    private Double longitude;
+    private String description;
+    private List<TimelineDayDTO> days;
+
+    // Momento (epoch millis) en que se obtuvo de la API externa; base de los TTL blando y duro
+    private long fetchedAt;
+
+    // Huella de la respuesta de la API de la que salió (CRC32C y tamaño); base de los ETag de las respuestas
+    private String contentHash;
+
+    // Coste en registros que cobró Visual Crossing por la petición (queryCost); solo para el control de admisión
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient long queryCost;
+
+    // Vista columnar de los días, construida bajo demanda y compartida mientras el timeline esté en el L1.
+    // No se serializa ni forma parte de equals/hashCode
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile DaySeries daySeries;
+
+}
@@ -0,0 +1,28 @@
+package com.jalveo.weatherAPI.DTOs.Cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Un día del timeline canónico: unión de los campos que usan TodayWeatherDTO y MonthWeatherDTO
+@Data
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TimelineDayDTO {
+    private LocalDate datetime;
+    private double tempmax;
+    private double tempmin;
+    private double temp;
+
+    private double humidity;
+    private double windspeed;
+
+    private String conditions;
+    private String description;
+    private String icon;
+    private String sunrise;
+    private String sunset;
+
+}
@@ -0,0 +1,43 @@
+package com.jalveo.weatherAPI.DTOs.Cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+// Metadatos del timeline cacheado (llave weather:meta:): lo justo para responder a peticiones condicionales
+// sin leer ni deserializar el timeline. Se guarda como texto plano "hash;fetchedAt;primerDía;últimoDía"
+@Data
+@AllArgsConstructor
+public class TimelineMetaDTO {
+    private String contentHash;
+    private long fetchedAt;
+    private LocalDate firstDay;
+    private LocalDate lastDay;
+
+    public static TimelineMetaDTO of(LocationTimelineDTO timeline) {
+        List<TimelineDayDTO> days = timeline.getDays();
+        return new TimelineMetaDTO(timeline.getContentHash(), timeline.getFetchedAt(),
+                days.get(0).getDatetime(), days.get(days.size() - 1).getDatetime());
+    }
+
+    // Vacío si el texto no tiene el formato esperado (por ejemplo, de otra versión de la app)
+    public static Optional<TimelineMetaDTO> fromText(String text) {
+        String[] parts = text.split(";");
+        if (parts.length != 4) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new TimelineMetaDTO(parts[0], Long.parseLong(parts[1]),
+                    LocalDate.ofEpochDay(Long.parseLong(parts[2])), LocalDate.ofEpochDay(Long.parseLong(parts[3]))));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public String toText() {
+        return contentHash + ";" + fetchedAt + ";" + firstDay.toEpochDay() + ";" + lastDay.toEpochDay();
+    }
+}
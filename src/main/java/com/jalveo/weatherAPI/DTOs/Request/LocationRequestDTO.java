@@ -0,0 +1,14 @@
+package com.jalveo.weatherAPI.DTOs.Request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationRequestDTO {
+    private String city;
+    private String country;
+
+}
@@ -0,0 +1,36 @@
+package com.jalveo.weatherAPI.DTOs.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Resultado de una ubicación dentro de una petición por lotes: status HTTP propio y datos o error
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchWeatherItemDTO {
+    private String city;
+    private String country;
+    private int status;
+    private TodayWeatherDTO weather;
+    private String error;
+
+    public static BatchWeatherItemDTO ok(String city, String country, TodayWeatherDTO weather) {
+        BatchWeatherItemDTO item = new BatchWeatherItemDTO();
+        item.setCity(city);
+        item.setCountry(country);
+        item.setStatus(200);
+        item.setWeather(weather);
+        return item;
+    }
+
+    public static BatchWeatherItemDTO error(String city, String country, int status, String error) {
+        BatchWeatherItemDTO item = new BatchWeatherItemDTO();
+        item.setCity(city);
+        item.setCountry(country);
+        item.setStatus(status);
+        item.setError(error);
+        return item;
+    }
+
+}
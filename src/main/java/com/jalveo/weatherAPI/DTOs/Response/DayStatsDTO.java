@@ -0,0 +1,27 @@
+package com.jalveo.weatherAPI.DTOs.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+// Agregados calculados en el servidor sobre los días de una ubicación
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DayStatsDTO {
+    private String city;
+    private String country;
+    private LocalDate from;
+    private LocalDate to;
+    private int days;
+
+    // Estadísticas por campo numérico (temp, tempmax, tempmin, humidity, windspeed)
+    private Map<String, FieldStatsDTO> fields;
+    // Número de días por condición e icono
+    private Map<String, Integer> conditions;
+    private Map<String, Integer> icons;
+
+}
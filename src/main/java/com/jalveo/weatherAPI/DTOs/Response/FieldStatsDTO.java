@@ -0,0 +1,19 @@
+package com.jalveo.weatherAPI.DTOs.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Estadísticas de un campo numérico en un rango de días; sin días solo se devuelve count
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FieldStatsDTO {
+    private int count;
+    private Double min;
+    private Double max;
+    private Double mean;
+    private Double p50;
+    private Double p90;
+
+}
@@ -0,0 +1,68 @@
+package com.jalveo.weatherAPI.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+// @EnableScheduling activa el refresco proactivo de ubicaciones populares (HotLocationRefresher)
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    @Value("${weather.cache.refresh.pool-size:4}")
+    private int refreshPoolSize;
+
+    @Value("${weather.cache.refresh.queue-capacity:100}")
+    private int refreshQueueCapacity;
+
+    @Value("${weather.batch.pool-size:16}")
+    private int batchPoolSize;
+
+    @Value("${weather.execution.async.pool-size:32}")
+    private int upstreamPoolSize;
+
+    @Value("${weather.execution.async.queue-capacity:1000}")
+    private int upstreamQueueCapacity;
+
+    // Hilos para los refrescos en segundo plano (stale-while-revalidate).
+    // La cola es acotada: si se llena, el refresco se descarta y se sigue sirviendo lo cacheado
+    @Bean
+    public ThreadPoolTaskExecutor refreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(refreshPoolSize);
+        executor.setMaxPoolSize(refreshPoolSize);
+        executor.setQueueCapacity(refreshQueueCapacity);
+        executor.setThreadNamePrefix("weather-refresh-");
+        return executor;
+    }
+
+    // Hilos para resolver en paralelo los fallos de caché de /batch.
+    // Si todos están ocupados, el hilo de la petición ejecuta la tarea: la concurrencia hacia la API queda acotada
+    @Bean
+    public ThreadPoolTaskExecutor batchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(batchPoolSize);
+        executor.setMaxPoolSize(batchPoolSize);
+        executor.setQueueCapacity(0);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("weather-batch-");
+        return executor;
+    }
+
+    // Modo async: hilos que esperan a la API externa en lugar de los de Tomcat.
+    // Hay una tarea por ubicación, no por petición, así que pocos hilos atienden muchas peticiones en espera.
+    // Con la cola llena la tarea se rechaza y la petición recibe 503
+    @Bean
+    public ThreadPoolTaskExecutor upstreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(upstreamPoolSize);
+        executor.setMaxPoolSize(upstreamPoolSize);
+        executor.setQueueCapacity(upstreamQueueCapacity);
+        executor.setThreadNamePrefix("weather-upstream-");
+        return executor;
+    }
+}
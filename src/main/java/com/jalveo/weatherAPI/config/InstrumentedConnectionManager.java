@@ -0,0 +1,151 @@
+package com.jalveo.weatherAPI.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Envuelve el pool de conexiones para medir cuánto espera cada petición por una conexión libre
+// y cuánto tarda el handshake TCP/TLS cuando hay que abrir una nueva.
+// También expone el control del pool (ConnPoolControl): HttpClientBuilder solo arranca el hilo que cierra las
+// conexiones inactivas y caducadas (evictIdleConnections / evictExpiredConnections) si el manager lo implementa
+public class InstrumentedConnectionManager implements HttpClientConnectionManager, ConnPoolControl<HttpRoute> {
+
+    private final PoolingHttpClientConnectionManager delegate;
+    private final Timer leaseTimer;
+    private final Timer connectTimer;
+
+    public InstrumentedConnectionManager(PoolingHttpClientConnectionManager delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.leaseTimer = Timer.builder("weather.upstream.pool.lease")
+                .description("Espera por una conexión del pool hacia la API de clima")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.connectTimer = Timer.builder("weather.upstream.connect")
+                .description("Tiempo de apertura de conexiones nuevas hacia la API de clima")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest request = delegate.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout);
+                } finally {
+                    leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        delegate.release(endpoint, newState, validDuration);
+    }
+
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue timeout, HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        try {
+            delegate.connect(endpoint, timeout, context);
+        } finally {
+            connectTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+        delegate.upgrade(endpoint, context);
+    }
+
+    @Override
+    public void setMaxTotal(int max) {
+        delegate.setMaxTotal(max);
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return delegate.getMaxTotal();
+    }
+
+    @Override
+    public void setDefaultMaxPerRoute(int max) {
+        delegate.setDefaultMaxPerRoute(max);
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return delegate.getDefaultMaxPerRoute();
+    }
+
+    @Override
+    public void setMaxPerRoute(HttpRoute route, int max) {
+        delegate.setMaxPerRoute(route, max);
+    }
+
+    @Override
+    public int getMaxPerRoute(HttpRoute route) {
+        return delegate.getMaxPerRoute(route);
+    }
+
+    @Override
+    public void closeIdle(TimeValue idleTime) {
+        delegate.closeIdle(idleTime);
+    }
+
+    @Override
+    public void closeExpired() {
+        delegate.closeExpired();
+    }
+
+    @Override
+    public Set<HttpRoute> getRoutes() {
+        return delegate.getRoutes();
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        return delegate.getTotalStats();
+    }
+
+    @Override
+    public PoolStats getStats(HttpRoute route) {
+        return delegate.getStats(route);
+    }
+
+    @Override
+    public void close(CloseMode closeMode) {
+        delegate.close(closeMode);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,65 @@
+package com.jalveo.weatherAPI.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Collection;
+
+// Caché en memoria (L1) que va delante de Redis (L2).
+// Caffeine usa W-TinyLFU, así que las ciudades más consultadas sobreviven a las ráfagas de claves frías.
+@Configuration
+public class LocalCacheConfig {
+
+    public static final String TIMELINE_PREFIX = "weather:timeline:";
+    public static final String ALIAS_PREFIX = "weather:alias:";
+
+    @Value("${weather.cache.l1.maximum-weight:10000}")
+    private long maximumWeight;
+
+    @Value("${weather.cache.l1.ttl.timeline:300}")
+    private long timelineTtlSeconds;
+
+    @Value("${weather.cache.l1.ttl.alias:3600}")
+    private long aliasTtlSeconds;
+
+    @Value("${weather.cache.l1.ttl.default:60}")
+    private long defaultTtlSeconds;
+
+    @Bean
+    public Cache<String, Object> localCache() {
+        return Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                // Un timeline pesa tantos días como tenga, cualquier otro valor pesa 1
+                .weigher((String key, Object value) -> weightOf(value))
+                .expireAfter(Expiry.creating((String key, Object value) -> ttlFor(key)))
+                .build();
+    }
+
+    private static int weightOf(Object value) {
+        if (value instanceof LocationTimelineDTO timeline && timeline.getDays() != null) {
+            return Math.max(1, timeline.getDays().size());
+        }
+        if (value instanceof Collection<?> collection) {
+            return Math.max(1, collection.size());
+        }
+        return 1;
+    }
+
+    // TTL del L1 según el prefijo de la llave
+    private Duration ttlFor(String key) {
+        if (key.startsWith(TIMELINE_PREFIX)) {
+            return Duration.ofSeconds(timelineTtlSeconds);
+        }
+        // Un alias casi nunca cambia de ubicación canónica: los más pedidos se quedan en memoria
+        if (key.startsWith(ALIAS_PREFIX)) {
+            return Duration.ofSeconds(aliasTtlSeconds);
+        }
+        return Duration.ofSeconds(defaultTtlSeconds);
+    }
+}
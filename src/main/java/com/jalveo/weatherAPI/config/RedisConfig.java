@@ -4,27 +4,39 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
 
 @Configuration
 public class RedisConfig {
 
+    // Los valores se guardan como bytes ya codificados por VersionedCacheCodec (Smile por defecto)
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, byte[]> redisTemplate(RedisConnectionFactory connectionFactory) {
 
 
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
         template.setKeySerializer(RedisSerializer.string());
-        template.setValueSerializer(RedisSerializer.json());
-        template.setHashValueSerializer(RedisSerializer.json());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
 
         template.afterPropertiesSet();
         return template;
     }
 
+    // Contenedor para las invalidaciones del caché L1 por pub/sub.
+    // Se crea sin suscripciones: CacheInvalidationSubscriber se suscribe al arrancar para no tumbar la app si Redis no está
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
 }
 
 
@@ -1,11 +1,27 @@
 package com.jalveo.weatherAPI.config;
 
+import com.jalveo.weatherAPI.service.UpstreamAdmissionController;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
     @Value("${weather.api.connect-timeout}")
@@ -14,9 +30,76 @@ public class RestTemplateConfig {
     @Value("${weather.api.read-timeout}")
     private int readTimeout;
 
+    // Conexiones keep-alive reutilizables hacia Visual Crossing
+    @Value("${weather.api.pool.max-total:50}")
+    private int maxTotal;
+
+    @Value("${weather.api.pool.max-per-route:20}")
+    private int maxPerRoute;
+
+    // Máximo que una petición espera por una conexión libre antes de fallar
+    @Value("${weather.api.pool.lease-timeout:1000}")
+    private int leaseTimeout;
+
+    @Value("${weather.api.pool.idle-timeout:30000}")
+    private int idleTimeout;
+
+    // Usa el cliente HTTP del JDK con HTTP/2 en lugar del pool de Apache (HTTP/1.1)
+    @Value("${weather.api.http2-enabled:false}")
+    private boolean http2Enabled;
+
+    @Bean
+    public RestTemplate restTemplate(ClientHttpRequestFactory upstreamRequestFactory, MeterRegistry meterRegistry,
+                                     UpstreamAdmissionController admissionController) {
+        RestTemplate restTemplate = new RestTemplate(upstreamRequestFactory);
+        restTemplate.getInterceptors().add(new UpstreamMetricsInterceptor(meterRegistry));
+        restTemplate.getInterceptors().add(new UpstreamRateLimitInterceptor(admissionController));
+        return restTemplate;
+    }
+
+    // Spring cierra el cliente (y su pool) al apagar la aplicación
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public ClientHttpRequestFactory upstreamRequestFactory(MeterRegistry meterRegistry) {
+        if (http2Enabled) {
+            return http2RequestFactory();
+        }
+        return pooledRequestFactory(meterRegistry);
+    }
+
+    private ClientHttpRequestFactory pooledRequestFactory(MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(pool, "visualcrossing").bindTo(meterRegistry);
+
+        // El cliente clásico de Apache añade Accept-Encoding y descomprime gzip/deflate por defecto
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(new InstrumentedConnectionManager(pool, meterRegistry))
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(leaseTimeout))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .build())
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout))
+                .evictExpiredConnections()
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    private ClientHttpRequestFactory http2RequestFactory() {
+        // El cliente del JDK multiplexa las peticiones sobre una conexión HTTP/2 por origen
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(Duration.ofMillis(readTimeout));
+        factory.enableCompression(true);
+        return factory;
     }
 
 }
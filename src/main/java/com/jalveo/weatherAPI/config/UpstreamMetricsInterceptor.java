@@ -0,0 +1,39 @@
+package com.jalveo.weatherAPI.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+// Mide el tiempo de respuesta de la API externa (hasta recibir las cabeceras) etiquetado por código HTTP.
+// No se etiqueta por URL para no crear una serie por ciudad
+public class UpstreamMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    public UpstreamMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String status = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = String.valueOf(response.getStatusCode().value());
+            return response;
+        } finally {
+            sample.stop(Timer.builder("weather.upstream.requests")
+                    .description("Tiempo de respuesta de la API de clima")
+                    .tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jalveo.weatherAPI.config;
+
+import com.jalveo.weatherAPI.service.UpstreamAdmissionController;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+// Pasa el status y las cabeceras de rate limit de cada respuesta al control de admisión,
+// que se pausa solo ante un 429 o cuando la API indica que no quedan peticiones
+public class UpstreamRateLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final UpstreamAdmissionController admissionController;
+
+    public UpstreamRateLimitInterceptor(UpstreamAdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        ClientHttpResponse response = execution.execute(request, body);
+        admissionController.onResponse(response.getStatusCode().value(), response.getHeaders());
+        return response;
+    }
+}
@@ -0,0 +1,160 @@
+package com.jalveo.weatherAPI.controllers;
+
+
+import com.jalveo.weatherAPI.DTOs.Request.LocationRequestDTO;
+import com.jalveo.weatherAPI.DTOs.Response.BatchWeatherItemDTO;
+import com.jalveo.weatherAPI.service.ResponseBodyCache;
+import com.jalveo.weatherAPI.service.ResponseValidators;
+import com.jalveo.weatherAPI.service.WeatherService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+// Modo async (weather.execution.mode=async): mismos endpoints que WeatherController, pero los de clima devuelven
+// CompletableFuture. Un acierto de caché se responde en el hilo de Tomcat; un fallo libera ese hilo y la respuesta
+// se escribe cuando la API externa contesta. Los errores del future ya llegan como ResponseStatusException
+@RestController
+@RequestMapping("/api/weather")
+@ConditionalOnProperty(name = "weather.execution.mode", havingValue = "async")
+public class AsyncWeatherController {
+
+    private final WeatherService weatherService;
+    private final ResponseBodyCache responseCache;
+
+    public AsyncWeatherController(WeatherService weatherService, ResponseBodyCache responseCache) {
+        this.weatherService = weatherService;
+        this.responseCache = responseCache;
+    }
+
+    @GetMapping("/{city}/{country}")
+    public CompletableFuture<ResponseEntity<byte[]>> getWeather(@PathVariable("city") String city, @PathVariable("country") String country,
+                                                                         @RequestHeader HttpHeaders headers) {
+        // Validación de parámetros
+        if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para obtener el clima");
+        }
+
+        // Un 304 o un cuerpo ya serializado se resuelven en el hilo de la petición, sin tocar el timeline
+        String encoding = ConditionalResponses.encoding(headers);
+        Optional<ResponseValidators> validators = weatherService.getWeatherValidators(city, country);
+        if (ConditionalResponses.isNotModified(validators, headers)) {
+            weatherService.recordUse(city, country, validators.get());
+            return CompletableFuture.completedFuture(ConditionalResponses.notModified(validators.get(), encoding));
+        }
+        Optional<ResponseEntity<byte[]>> cached = ConditionalResponses.cached(responseCache, validators, encoding);
+        if (cached.isPresent()) {
+            weatherService.recordUse(city, country, validators.get());
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        return weatherService.getWeatherAsync(city, country).thenApply(weather ->
+                ConditionalResponses.render(responseCache, weather, encoding));
+    }
+
+    @GetMapping("/{city}/{country}/days")
+    public CompletableFuture<ResponseEntity<byte[]>> getWeatherPerDay(@PathVariable("city") String city, @PathVariable("country") String country,
+                                                                                     @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                                     @RequestHeader HttpHeaders headers) {
+        // Validación de parámetros
+        if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para obtener el clima");
+        }
+
+        String encoding = ConditionalResponses.encoding(headers);
+        Optional<ResponseValidators> validators = weatherService.getWeatherMonthValidators(city, country, from, to);
+        if (ConditionalResponses.isNotModified(validators, headers)) {
+            weatherService.recordUse(city, country, validators.get());
+            return CompletableFuture.completedFuture(ConditionalResponses.notModified(validators.get(), encoding));
+        }
+        Optional<ResponseEntity<byte[]>> cached = ConditionalResponses.cached(responseCache, validators, encoding);
+        if (cached.isPresent()) {
+            weatherService.recordUse(city, country, validators.get());
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        return weatherService.getWeatherMonthAsync(city, country, from, to).thenApply(days ->
+                ConditionalResponses.render(responseCache, days, encoding));
+    }
+
+    @GetMapping("/{city}/{country}/days/stats")
+    public CompletableFuture<ResponseEntity<byte[]>> getDayStats(@PathVariable("city") String city, @PathVariable("country") String country,
+                                                                      @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                      @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                      @RequestParam(value = "fields", required = false) List<String> fields,
+                                                                      @RequestHeader HttpHeaders headers) {
+        // Validación de parámetros
+        if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para obtener el clima");
+        }
+
+        String encoding = ConditionalResponses.encoding(headers);
+        Optional<ResponseValidators> validators = weatherService.getDayStatsValidators(city, country, from, to, fields);
+        if (ConditionalResponses.isNotModified(validators, headers)) {
+            weatherService.recordUse(city, country, validators.get());
+            return CompletableFuture.completedFuture(ConditionalResponses.notModified(validators.get(), encoding));
+        }
+        Optional<ResponseEntity<byte[]>> cached = ConditionalResponses.cached(responseCache, validators, encoding);
+        if (cached.isPresent()) {
+            weatherService.recordUse(city, country, validators.get());
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        return weatherService.getDayStatsAsync(city, country, from, to, fields).thenApply(stats ->
+                ConditionalResponses.render(responseCache, stats, encoding));
+    }
+
+    // El lote ya reparte los fallos de caché en batchExecutor; se mantiene síncrono
+    @PostMapping("/batch")
+    public List<BatchWeatherItemDTO> getWeatherBatch(@RequestBody List<LocationRequestDTO> locations) {
+        try {
+            // Validación de parámetros
+            if (locations == null || locations.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere al menos una ubicación");
+            }
+
+            // Cada ubicación lleva su propio status; los errores individuales no fallan el lote
+            return weatherService.getWeatherBatch(locations);
+
+        } catch (ResponseStatusException e) {
+            // Re-lanzamos las excepciones de tipo ResponseStatusException
+            throw e;
+        } catch (Exception e) {
+            // Cualquier otro error no previsto
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener el clima por lotes: " + e.getMessage(), e);
+        }
+    }
+
+    @GetMapping("/{city}/{country}/clear-cache")
+    public void clearCache(@PathVariable("city") String city, @PathVariable("country") String country) {
+
+        try {
+            // Validación de parámetros
+            if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para eliminar el cache");
+            }
+
+            weatherService.clearCache(city, country);
+
+        } catch (ResponseStatusException e) {
+            // Re-lanzamos las excepciones de tipo ResponseStatusException
+            throw e;
+        } catch (Exception e) {
+            // Cualquier otro error no previsto
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al eliminar el cache: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.jalveo.weatherAPI.controllers;
+
+import com.jalveo.weatherAPI.service.ResponseBodyCache;
+import com.jalveo.weatherAPI.service.ResponseValidators;
+import com.jalveo.weatherAPI.service.VersionedResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Respuestas de los endpoints de clima, compartidas por WeatherController y AsyncWeatherController:
+// ETag, Last-Modified y Cache-Control, y el cuerpo en bytes ya serializados (y comprimidos) de ResponseBodyCache
+final class ConditionalResponses {
+
+    private ConditionalResponses() {
+    }
+
+    // gzip si el cliente lo acepta (q distinto de 0); cualquier otra codificación se sirve sin comprimir
+    static String encoding(HttpHeaders request) {
+        for (String header : request.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String token : header.split(",")) {
+                String[] parts = token.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase(ResponseBodyCache.GZIP) && !isZeroQuality(parts)) {
+                    return ResponseBodyCache.GZIP;
+                }
+            }
+        }
+        return ResponseBodyCache.IDENTITY;
+    }
+
+    private static boolean isZeroQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean isNotModified(Optional<ResponseValidators> validators, HttpHeaders request) {
+        return validators.isPresent() && validators.get().notModified(request.getIfNoneMatch(), request.getIfModifiedSince());
+    }
+
+    // 304 sin cuerpo: no pasa por Jackson ni por la API externa
+    static ResponseEntity<byte[]> notModified(ResponseValidators validators, String encoding) {
+        return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT_ENCODING),
+                validators, encoding).build();
+    }
+
+    // Acierto: los bytes guardados para esta versión del contenido y esta codificación
+    static Optional<ResponseEntity<byte[]>> cached(ResponseBodyCache cache, Optional<ResponseValidators> validators, String encoding) {
+        return validators.flatMap(v -> cache.get(v.etag(), encoding).map(body -> ok(body, validators, encoding)));
+    }
+
+    // Fallo: serializa el DTO y deja sus bytes en el caché para las siguientes peticiones, bajo el ETag de la versión
+    // del timeline de la que salió el cuerpo (no el consultado antes de leerlo)
+    static ResponseEntity<byte[]> render(ResponseBodyCache cache, VersionedResponse<?> response, String encoding) {
+        Optional<ResponseValidators> validators = response.validators();
+        return ok(cache.put(validators.map(ResponseValidators::etag).orElse(null), response.body(), encoding), validators, encoding);
+    }
+
+    private static ResponseEntity<byte[]> ok(byte[] body, Optional<ResponseValidators> validators, String encoding) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(body.length)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (ResponseBodyCache.GZIP.equals(encoding)) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, ResponseBodyCache.GZIP);
+        }
+        return validators.map(v -> withValidators(builder, v, encoding)).orElse(builder).body(body);
+    }
+
+    private static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder builder, ResponseValidators validators,
+                                                            String encoding) {
+        return builder
+                .eTag(validators.etag(encoding))
+                .lastModified(validators.lastModified())
+                .cacheControl(CacheControl.maxAge(validators.maxAgeSeconds(), TimeUnit.SECONDS)
+                        .staleWhileRevalidate(validators.staleWhileRevalidateSeconds(), TimeUnit.SECONDS)
+                        .cachePublic());
+    }
+}
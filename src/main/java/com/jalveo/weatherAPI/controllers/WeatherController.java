@@ -1,39 +1,74 @@
 package com.jalveo.weatherAPI.controllers;
 
 
+import com.jalveo.weatherAPI.DTOs.Request.LocationRequestDTO;
+import com.jalveo.weatherAPI.DTOs.Response.BatchWeatherItemDTO;
+import com.jalveo.weatherAPI.DTOs.Response.DayStatsDTO;
 import com.jalveo.weatherAPI.DTOs.Response.MonthWeatherDTO;
 import com.jalveo.weatherAPI.DTOs.Response.TodayWeatherDTO;
+import com.jalveo.weatherAPI.service.ResponseBodyCache;
+import com.jalveo.weatherAPI.service.ResponseValidators;
+import com.jalveo.weatherAPI.service.VersionedResponse;
 import com.jalveo.weatherAPI.service.WeatherService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
+// Modo por defecto (weather.execution.mode=blocking): cada petición ocupa su hilo de Tomcat hasta responder.
+// Con weather.execution.mode=async se usa AsyncWeatherController
 @RestController
 @RequestMapping("/api/weather")
+@ConditionalOnProperty(name = "weather.execution.mode", havingValue = "blocking", matchIfMissing = true)
 public class WeatherController {
 
     private final WeatherService weatherService;
+    private final ResponseBodyCache responseCache;
 
-    public WeatherController(WeatherService weatherService) {
+    public WeatherController(WeatherService weatherService, ResponseBodyCache responseCache) {
         this.weatherService = weatherService;
+        this.responseCache = responseCache;
     }
 
     @GetMapping("/{city}/{country}")
-    public TodayWeatherDTO getWeather(@PathVariable("city") String city, @PathVariable("country") String country) {
+    public ResponseEntity<byte[]> getWeather(@PathVariable("city") String city, @PathVariable("country") String country,
+                                                      @RequestHeader HttpHeaders headers) {
         try {
             // Validación de parámetros
             if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para obtener el clima");
             }
 
-            return weatherService.getWeather(city, country);
+            // Con un 304 o un cuerpo ya serializado para este ETag no se lee el timeline ni se pasa por Jackson
+            String encoding = ConditionalResponses.encoding(headers);
+            Optional<ResponseValidators> validators = weatherService.getWeatherValidators(city, country);
+            if (ConditionalResponses.isNotModified(validators, headers)) {
+                weatherService.recordUse(city, country, validators.get());
+                return ConditionalResponses.notModified(validators.get(), encoding);
+            }
+            Optional<ResponseEntity<byte[]>> cached = ConditionalResponses.cached(responseCache, validators, encoding);
+            if (cached.isPresent()) {
+                weatherService.recordUse(city, country, validators.get());
+                return cached.get();
+            }
+            VersionedResponse<TodayWeatherDTO> weather = weatherService.getWeatherResponse(city, country);
+            return ConditionalResponses.render(responseCache, weather, encoding);
 
         } catch (ResponseStatusException e) {
             // Re-lanzamos las excepciones de tipo ResponseStatusException
@@ -51,14 +86,29 @@ public class WeatherController {
 
     }
     @GetMapping("/{city}/{country}/days")
-    public List<MonthWeatherDTO> getWeatherPerDay(@PathVariable("city") String city, @PathVariable("country") String country) {
+    public ResponseEntity<byte[]> getWeatherPerDay(@PathVariable("city") String city, @PathVariable("country") String country,
+                                                                  @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                  @RequestHeader HttpHeaders headers) {
         try {
             // Validación de parámetros
             if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para obtener el clima");
             }
 
-            return weatherService.getWeatherMonth(city, country);
+            String encoding = ConditionalResponses.encoding(headers);
+            Optional<ResponseValidators> validators = weatherService.getWeatherMonthValidators(city, country, from, to);
+            if (ConditionalResponses.isNotModified(validators, headers)) {
+                weatherService.recordUse(city, country, validators.get());
+                return ConditionalResponses.notModified(validators.get(), encoding);
+            }
+            Optional<ResponseEntity<byte[]>> cached = ConditionalResponses.cached(responseCache, validators, encoding);
+            if (cached.isPresent()) {
+                weatherService.recordUse(city, country, validators.get());
+                return cached.get();
+            }
+            VersionedResponse<List<MonthWeatherDTO>> days = weatherService.getWeatherMonthResponse(city, country, from, to);
+            return ConditionalResponses.render(responseCache, days, encoding);
 
         } catch (ResponseStatusException e) {
             // Re-lanzamos las excepciones de tipo ResponseStatusException
@@ -75,6 +125,67 @@ public class WeatherController {
         }
     }
 
+    @GetMapping("/{city}/{country}/days/stats")
+    public ResponseEntity<byte[]> getDayStats(@PathVariable("city") String city, @PathVariable("country") String country,
+                                                   @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                   @RequestParam(value = "fields", required = false) List<String> fields,
+                                                   @RequestHeader HttpHeaders headers) {
+        try {
+            // Validación de parámetros
+            if (city == null || city.isEmpty() || country == null || country.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere la ciudad y el país para obtener el clima");
+            }
+
+            String encoding = ConditionalResponses.encoding(headers);
+            Optional<ResponseValidators> validators = weatherService.getDayStatsValidators(city, country, from, to, fields);
+            if (ConditionalResponses.isNotModified(validators, headers)) {
+                weatherService.recordUse(city, country, validators.get());
+                return ConditionalResponses.notModified(validators.get(), encoding);
+            }
+            Optional<ResponseEntity<byte[]>> cached = ConditionalResponses.cached(responseCache, validators, encoding);
+            if (cached.isPresent()) {
+                weatherService.recordUse(city, country, validators.get());
+                return cached.get();
+            }
+            VersionedResponse<DayStatsDTO> stats = weatherService.getDayStatsResponse(city, country, from, to, fields);
+            return ConditionalResponses.render(responseCache, stats, encoding);
+
+        } catch (ResponseStatusException e) {
+            // Re-lanzamos las excepciones de tipo ResponseStatusException
+            throw e;
+        } catch (HttpClientErrorException e) {
+            // Errores 4xx de la API externa (ciudad no encontrada, etc.)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ciudad o país no encontrado: " + e.getMessage(), e);
+        } catch (HttpServerErrorException e) {
+            // Errores 5xx de la API externa
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio de clima no está disponible temporalmente", e);
+        } catch (Exception e) {
+            // Cualquier otro error no previsto
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener las estadísticas: " + e.getMessage(), e);
+        }
+    }
+
+    @PostMapping("/batch")
+    public List<BatchWeatherItemDTO> getWeatherBatch(@RequestBody List<LocationRequestDTO> locations) {
+        try {
+            // Validación de parámetros
+            if (locations == null || locations.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere al menos una ubicación");
+            }
+
+            // Cada ubicación lleva su propio status; los errores individuales no fallan el lote
+            return weatherService.getWeatherBatch(locations);
+
+        } catch (ResponseStatusException e) {
+            // Re-lanzamos las excepciones de tipo ResponseStatusException
+            throw e;
+        } catch (Exception e) {
+            // Cualquier otro error no previsto
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener el clima por lotes: " + e.getMessage(), e);
+        }
+    }
+
     @GetMapping("/{city}/{country}/clear-cache")
     public void clearCache(@PathVariable("city") String city, @PathVariable("country") String country) {
 
@@ -0,0 +1,51 @@
+package com.jalveo.weatherAPI.service;
+
+import com.jalveo.weatherAPI.DTOs.Request.LocationRequestDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Registra con qué frecuencia se pide cada ubicación. La frecuencia vive en un count-min sketch de tamaño fijo;
+// aparte se guarda un conjunto acotado de candidatas (llave -> ciudad/país) para poder refrescarlas
+@Component
+public class AccessFrequencyTracker {
+
+    private final FrequencySketch sketch;
+    private final int maxCandidates;
+    private final Map<String, LocationRequestDTO> candidates = new ConcurrentHashMap<>();
+
+    public AccessFrequencyTracker(@Value("${weather.cache.hot-refresh.sketch-width:4096}") int sketchWidth,
+                                  @Value("${weather.cache.hot-refresh.max-candidates:1000}") int maxCandidates) {
+        this.sketch = new FrequencySketch(sketchWidth);
+        this.maxCandidates = maxCandidates;
+    }
+
+    public void record(String key, String city, String country) {
+        sketch.increment(key);
+        // Con el conjunto lleno, las llaves nuevas esperan a la siguiente poda
+        if (candidates.size() < 2 * maxCandidates) {
+            candidates.putIfAbsent(key, new LocationRequestDTO(city, country));
+        }
+    }
+
+    public int estimate(String key) {
+        return sketch.estimate(key);
+    }
+
+    // Las k llaves más pedidas, de más a menos. Poda las candidatas que quedan fuera de las maxCandidates primeras
+    public List<Map.Entry<String, LocationRequestDTO>> hottest(int k) {
+        List<Map.Entry<String, LocationRequestDTO>> ranked = candidates.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingInt((Map.Entry<String, LocationRequestDTO> entry) -> sketch.estimate(entry.getKey()))
+                        .reversed())
+                .toList();
+        for (int i = maxCandidates; i < ranked.size(); i++) {
+            candidates.remove(ranked.get(i).getKey());
+        }
+        return ranked.subList(0, Math.min(k, ranked.size()));
+    }
+}
@@ -0,0 +1,48 @@
+package com.jalveo.weatherAPI.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Suscribe CacheService al canal de invalidación para que un clearCache en un nodo limpie el L1 de todos.
+// Si Redis no está disponible al arrancar, reintenta en segundo plano; mientras tanto el TTL del L1 limita lo obsoleto
+@Component
+public class CacheInvalidationSubscriber {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationSubscriber.class);
+    private static final long RETRY_SECONDS = 30;
+
+    private final RedisMessageListenerContainer container;
+    private final CacheService cacheService;
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-invalidation-subscriber");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CacheInvalidationSubscriber(RedisMessageListenerContainer container, CacheService cacheService) {
+        this.container = container;
+        this.cacheService = cacheService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        try {
+            container.addMessageListener(cacheService, new ChannelTopic(CacheService.INVALIDATION_CHANNEL));
+            retryExecutor.shutdown();
+            logger.debug("Suscrito al canal de invalidación '{}'", CacheService.INVALIDATION_CHANNEL);
+        } catch (Exception e) {
+            container.removeMessageListener(cacheService);
+            logger.warn("No se pudo suscribir al canal de invalidación, reintentando en {}s: {}", RETRY_SECONDS, e.getMessage());
+            retryExecutor.schedule(this::subscribe, RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+}
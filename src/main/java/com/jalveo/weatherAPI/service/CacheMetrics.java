@@ -0,0 +1,74 @@
+package com.jalveo.weatherAPI.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Métricas del caché. Las etiquetas son de cardinalidad baja y acotada: el prefijo de la llave
+// (timeline, days, lease...), nunca la ciudad, así el registro no crece con el tráfico
+class CacheMetrics {
+
+    // Prefijos conocidos (weather:<prefijo>:...); cualquier otro se agrupa como "other"
+    private static final Set<String> KNOWN_PREFIXES = Set.of("timeline", "days", "meta", "alias", "lease");
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> gets = new ConcurrentHashMap<>();
+    private final Map<String, Timer> redisTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> payloads = new ConcurrentHashMap<>();
+
+    CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    static String prefixOf(String key) {
+        if (key == null || !key.startsWith("weather:")) {
+            return "other";
+        }
+        int end = key.indexOf(':', "weather:".length());
+        String prefix = end < 0 ? key.substring("weather:".length()) : key.substring("weather:".length(), end);
+        return KNOWN_PREFIXES.contains(prefix) ? prefix : "other";
+    }
+
+    // result: hit, miss o error; tier: l1 (memoria) o l2 (Redis)
+    void countGet(String key, String tier, String result) {
+        countGet(key, tier, result, 1);
+    }
+
+    void countGet(String key, String tier, String result, int amount) {
+        String prefix = prefixOf(key);
+        gets.computeIfAbsent(prefix + '|' + tier + '|' + result, id -> Counter.builder("weather.cache.gets")
+                        .description("Lecturas del caché por prefijo, nivel y resultado")
+                        .tag("prefix", prefix)
+                        .tag("tier", tier)
+                        .tag("result", result)
+                        .register(registry))
+                .increment(amount);
+    }
+
+    // Latencia de cada operación de Redis (get, mget, hmget, set, hset, delete, lease, release)
+    Timer redisTimer(String operation) {
+        return redisTimers.computeIfAbsent(operation, op -> Timer.builder("weather.cache.redis")
+                .description("Latencia de las operaciones de Redis")
+                .tag("operation", op)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    // Tamaño de los valores codificados que se leen y escriben en Redis
+    void recordPayload(String key, String direction, int bytes) {
+        String prefix = prefixOf(key);
+        payloads.computeIfAbsent(prefix + '|' + direction, id -> DistributionSummary.builder("weather.cache.payload")
+                        .description("Tamaño de los valores del caché en Redis")
+                        .baseUnit("bytes")
+                        .tag("prefix", prefix)
+                        .tag("direction", direction)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(bytes);
+    }
+}
@@ -1,64 +1,345 @@
 package com.jalveo.weatherAPI.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.jalveo.weatherAPI.service.codec.VersionedCacheCodec;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 @Service
-public class CacheService {
+public class CacheService implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "weather:cache:invalidate";
+    private static final String LEASE_PREFIX = "weather:lease:";
+    private static final String LEASE_SEQUENCE = "weather:lease:seq";
+    private static final String FENCE_PREFIX = "weather:fence:";
+
+    // Borra el lease solo si sigue siendo nuestro (mismo token), para no soltar el de otro nodo
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    // Escribe los valores solo si ningún lease con un token mayor escribió antes (fencing token): un nodo cuyo lease
+    // caducó a mitad de la petición no pisa el resultado del que lo tomó después.
+    // KEYS[1] = token de la última escritura, KEYS[2..n] = llaves; ARGV[1] = token, ARGV[2] = TTL, ARGV[3..] = valores
+    private static final RedisScript<Long> FENCED_SET_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('get', KEYS[1]) "
+                    + "if current and tonumber(current) > tonumber(ARGV[1]) then return 0 end "
+                    + "redis.call('set', KEYS[1], ARGV[1], 'EX', ARGV[2]) "
+                    + "for i = 2, #KEYS do redis.call('set', KEYS[i], ARGV[i + 1], 'EX', ARGV[2]) end "
+                    + "return 1",
+            Long.class);
 
     private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final VersionedCacheCodec codec;
+    private final Cache<String, Object> localCache;
+    private final RedisCircuitBreaker breaker;
+
+    // Aciertos/fallos/errores por prefijo y nivel (L1 = memoria, L2 = Redis), latencia de Redis y tamaños
+    private final CacheMetrics metrics;
 
-    public CacheService(RedisTemplate<String, Object> redisTemplate) {
+    public CacheService(RedisTemplate<String, byte[]> redisTemplate, VersionedCacheCodec codec,
+                        Cache<String, Object> localCache, RedisCircuitBreaker breaker, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
-        this.objectMapper = new ObjectMapper();
-        // Registrar el módulo JavaTimeModule para soportar LocalDate, LocalDateTime, etc.
-        this.objectMapper.registerModule(new JavaTimeModule());
+        this.codec = codec;
+        this.localCache = localCache;
+        this.breaker = breaker;
+
+        this.metrics = new CacheMetrics(meterRegistry);
+    }
+
+    // Toda llamada a Redis pasa por el circuit breaker: con el circuito abierto se devuelve fallback al instante,
+    // sin esperar el timeout de Lettuce. Los errores se registran en el breaker y se propagan al catch de cada método
+    private <T> T redis(String operation, Supplier<T> call, T fallback) {
+        if (!breaker.tryAcquire()) {
+            return fallback;
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            long elapsed = System.nanoTime() - start;
+            breaker.onSuccess(elapsed);
+            metrics.redisTimer(operation).record(elapsed, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            breaker.onError();
+            throw e;
+        }
     }
 
     //Obtenemos la información cacheada
     public <T> Optional<T> get(String key, Class<T> type) {
+        Object local = localCache.getIfPresent(key);
+        if (type.isInstance(local)) {
+            metrics.countGet(key, "l1", "hit");
+            return Optional.of(type.cast(local));
+        }
+        metrics.countGet(key, "l1", "miss");
+        return getFromStore(key, type);
+    }
+
+    // Solo el L1: no toca Redis
+    public <T> Optional<T> getLocal(String key, Class<T> type) {
+        Object local = localCache.getIfPresent(key);
+        if (type.isInstance(local)) {
+            metrics.countGet(key, "l1", "hit");
+            return Optional.of(type.cast(local));
+        }
+        metrics.countGet(key, "l1", "miss");
+        return Optional.empty();
+    }
+
+    // Solo el L1 y sin contar en las métricas: para consultas auxiliares que no son una lectura del valor
+    public <T> Optional<T> peekLocal(String key, Class<T> type) {
+        Object local = localCache.getIfPresent(key);
+        return type.isInstance(local) ? Optional.of(type.cast(local)) : Optional.empty();
+    }
+
+    // Lee directamente de Redis saltando el L1 y deja en el L1 lo que encuentre
+    public <T> Optional<T> getFromStore(String key, Class<T> type) {
         try {
-            Object value = redisTemplate.opsForValue().get(key);
-            if (value == null) {
+            byte[] value = redis("get", () -> redisTemplate.opsForValue().get(key), null);
+            // Se decodifica una sola vez, directamente al tipo pedido
+            T result = value == null ? null : codec.decode(value, type);
+            if (result == null) {
+                metrics.countGet(key, "l2", "miss");
                 return Optional.empty();
             }
-            // Usar ObjectMapper para deserializar correctamente
-            T result = objectMapper.convertValue(value, type);
-            return Optional.ofNullable(result);
+            metrics.countGet(key, "l2", "hit");
+            metrics.recordPayload(key, "read", value.length);
+            localCache.put(key, result);
+            return Optional.of(result);
         } catch (Exception e) {
+            metrics.countGet(key, "l2", "error");
             logger.error("Redis error para la llave '{}': {}", key, e.getMessage());
             return Optional.empty();
         }
     }
 
-    // Método para obtener listas de objetos desde el caché
-    public <T> Optional<List<T>> getList(String key, Class<T> elementType) {
+    // Lectura de varias llaves: primero el L1 y las que falten en un único MGET a Redis.
+    // Devuelve solo las llaves encontradas
+    public <T> Map<String, T> multiGet(Collection<String> keys, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            Object local = localCache.getIfPresent(key);
+            if (type.isInstance(local)) {
+                metrics.countGet(key, "l1", "hit");
+                found.put(key, type.cast(local));
+            } else {
+                metrics.countGet(key, "l1", "miss");
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+
         try {
-            Object value = redisTemplate.opsForValue().get(key);
+            List<byte[]> values = redis("mget", () -> redisTemplate.opsForValue().multiGet(remoteKeys), null);
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                byte[] value = values == null ? null : values.get(i);
+                T result = value == null ? null : codec.decode(value, type);
+                if (result == null) {
+                    metrics.countGet(remoteKeys.get(i), "l2", "miss");
+                    continue;
+                }
+                metrics.countGet(remoteKeys.get(i), "l2", "hit");
+                metrics.recordPayload(remoteKeys.get(i), "read", value.length);
+                localCache.put(remoteKeys.get(i), result);
+                found.put(remoteKeys.get(i), result);
+            }
+        } catch (Exception e) {
+            // Las llaves no encontradas se resuelven contra la API externa
+            metrics.countGet(remoteKeys.get(0), "l2", "error", remoteKeys.size());
+            logger.error("Redis error en MGET de {} llaves: {}", remoteKeys.size(), e.getMessage());
+        }
+        return found;
+    }
+
+    // Lee solo los campos pedidos de un hash (HMGET) y decodifica cada uno por separado.
+    // Devuelve solo los campos encontrados; los hashes no pasan por el L1
+    public <T> Map<String, T> getHashFields(String key, List<String> fields, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        if (fields.isEmpty()) {
+            return found;
+        }
+        try {
+            List<byte[]> values = redis("hmget", () -> redisTemplate.<String, byte[]>opsForHash().multiGet(key, fields), null);
+            for (int i = 0; i < fields.size(); i++) {
+                byte[] value = values == null ? null : values.get(i);
+                T result = value == null ? null : codec.decode(value, type);
+                if (result == null) {
+                    metrics.countGet(key, "l2", "miss");
+                    continue;
+                }
+                metrics.countGet(key, "l2", "hit");
+                metrics.recordPayload(key, "read", value.length);
+                found.put(fields.get(i), result);
+            }
+        } catch (Exception e) {
+            metrics.countGet(key, "l2", "error", fields.size());
+            // Los campos no encontrados se resuelven contra la API externa
+            logger.error("Redis error en HMGET de '{}': {}", key, e.getMessage());
+        }
+        return found;
+    }
+
+    // Escribe varios campos de un hash (HSET), borra los que ya no cumplen keep (HDEL) y renueva su expiración.
+    // Los campos que se escriben ahora se conservan aunque keep los descarte
+    public void saveHashFields(String key, Map<String, ?> values, long seconds, Predicate<String> keep) {
+        try {
+            if (key == null || key.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La clave no puede ser nula o vacía");
+            }
+            if (seconds <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El tiempo de expiración debe ser mayor a 0");
+            }
+            if (values == null || values.isEmpty()) {
+                return;
+            }
+            Map<String, byte[]> encoded = new HashMap<>(values.size() * 2);
+            for (Map.Entry<String, ?> entry : values.entrySet()) {
+                byte[] value = codec.encode(entry.getValue());
+                metrics.recordPayload(key, "write", value.length);
+                encoded.put(entry.getKey(), value);
+            }
+            redis("hset", () -> {
+                HashOperations<String, String, byte[]> hash = redisTemplate.opsForHash();
+                Set<String> fields = hash.keys(key);
+                List<Object> outdated = new ArrayList<>();
+                if (fields != null) {
+                    for (String field : fields) {
+                        if (!encoded.containsKey(field) && !keep.test(field)) {
+                            outdated.add(field);
+                        }
+                    }
+                }
+                if (!outdated.isEmpty()) {
+                    hash.delete(key, outdated.toArray());
+                }
+                hash.putAll(key, encoded);
+                return redisTemplate.expire(key, Duration.ofSeconds(seconds));
+            }, null);
+        } catch (ResponseStatusException e) {
+            throw e; // Re-lanzamos las excepciones de validación
+        } catch (Exception e) {
+            // Si Redis está caído, logueamos pero no lanzamos error para que la app continúe
+            logger.error("Error al guardar el hash en cache: '{}': {}", key, e.getMessage());
+        }
+    }
+
+    // Texto corto guardado tal cual (UTF-8) sin pasar por el codec: metadatos que se leen en cada petición
+    // y que no deben costar una deserialización
+    public Optional<String> getText(String key) {
+        Object local = localCache.getIfPresent(key);
+        if (local instanceof String text) {
+            metrics.countGet(key, "l1", "hit");
+            return Optional.of(text);
+        }
+        metrics.countGet(key, "l1", "miss");
+        try {
+            byte[] value = redis("get", () -> redisTemplate.opsForValue().get(key), null);
             if (value == null) {
+                metrics.countGet(key, "l2", "miss");
                 return Optional.empty();
             }
-            // Usar ObjectMapper con TypeReference para deserializar correctamente listas
-            List<T> result = objectMapper.convertValue(value, new TypeReference<>() {});
-            return Optional.ofNullable(result);
+            metrics.countGet(key, "l2", "hit");
+            String text = new String(value, StandardCharsets.UTF_8);
+            localCache.put(key, text);
+            return Optional.of(text);
         } catch (Exception e) {
-            logger.error("Redis error al obtener lista para la llave '{}': {}", key, e.getMessage());
+            metrics.countGet(key, "l2", "error");
+            logger.error("Redis error para la llave '{}': {}", key, e.getMessage());
             return Optional.empty();
         }
     }
 
+    // Varios textos con un único MGET para los que no estén en el L1. Devuelve solo las llaves encontradas
+    public Map<String, String> multiGetText(Collection<String> keys) {
+        Map<String, String> found = new HashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            if (localCache.getIfPresent(key) instanceof String text) {
+                metrics.countGet(key, "l1", "hit");
+                found.put(key, text);
+            } else {
+                metrics.countGet(key, "l1", "miss");
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+
+        try {
+            List<byte[]> values = redis("mget", () -> redisTemplate.opsForValue().multiGet(remoteKeys), null);
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                byte[] value = values == null ? null : values.get(i);
+                if (value == null) {
+                    metrics.countGet(remoteKeys.get(i), "l2", "miss");
+                    continue;
+                }
+                metrics.countGet(remoteKeys.get(i), "l2", "hit");
+                String text = new String(value, StandardCharsets.UTF_8);
+                localCache.put(remoteKeys.get(i), text);
+                found.put(remoteKeys.get(i), text);
+            }
+        } catch (Exception e) {
+            metrics.countGet(remoteKeys.get(0), "l2", "error", remoteKeys.size());
+            logger.error("Redis error en MGET de {} llaves: {}", remoteKeys.size(), e.getMessage());
+        }
+        return found;
+    }
+
+    public void saveText(String key, String value, long seconds) {
+        try {
+            if (key == null || key.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La clave no puede ser nula o vacía");
+            }
+            if (value == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El valor no puede ser nulo");
+            }
+            if (seconds <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El tiempo de expiración debe ser mayor a 0");
+            }
+            localCache.put(key, value);
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            redis("set", () -> {
+                redisTemplate.opsForValue().set(key, encoded, seconds, TimeUnit.SECONDS);
+                return null;
+            }, null);
+        } catch (ResponseStatusException e) {
+            throw e; // Re-lanzamos las excepciones de validación
+        } catch (Exception e) {
+            // Si Redis está caído, logueamos pero no lanzamos error para que la app continúe
+            logger.error("Error al guardar en cache: '{}': {}", key, e.getMessage());
+        }
+    }
 
     //Guardamos el cache
     public void save(String key, Object value, long seconds){
@@ -72,7 +353,13 @@ public class CacheService {
             if (seconds <= 0) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El tiempo de expiración debe ser mayor a 0");
             }
-            redisTemplate.opsForValue().set(key, value, seconds, java.util.concurrent.TimeUnit.SECONDS);
+            localCache.put(key, value);
+            byte[] encoded = codec.encode(value);
+            metrics.recordPayload(key, "write", encoded.length);
+            redis("set", () -> {
+                redisTemplate.opsForValue().set(key, encoded, seconds, TimeUnit.SECONDS);
+                return null;
+            }, null);
         } catch (ResponseStatusException e) {
             throw e; // Re-lanzamos las excepciones de validación
         } catch (Exception e) {
@@ -81,13 +368,60 @@ public class CacheService {
         }
     }
 
+    // Guarda varios valores a la vez con el token del lease con el que se obtuvieron (ver FENCED_SET_SCRIPT).
+    // Los String se guardan como texto (getText) y el resto con el codec. Devuelve false si un lease más nuevo
+    // ya había escrito: entonces se descarta también del L1 para que la siguiente lectura traiga el suyo de Redis
+    public boolean saveFenced(FetchLease lease, String fenceKey, Map<String, Object> values, long seconds) {
+        try {
+            if (fenceKey == null || fenceKey.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La clave no puede ser nula o vacía");
+            }
+            if (values == null || values.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El valor no puede ser nulo");
+            }
+            if (seconds <= 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El tiempo de expiración debe ser mayor a 0");
+            }
+            List<String> keys = new ArrayList<>(values.size() + 1);
+            List<byte[]> args = new ArrayList<>(values.size() + 2);
+            keys.add(FENCE_PREFIX + fenceKey);
+            args.add(tokenBytes(lease.token()));
+            args.add(Long.toString(seconds).getBytes(StandardCharsets.US_ASCII));
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                byte[] encoded = entry.getValue() instanceof String text
+                        ? text.getBytes(StandardCharsets.UTF_8) : codec.encode(entry.getValue());
+                metrics.recordPayload(entry.getKey(), "write", encoded.length);
+                keys.add(entry.getKey());
+                args.add(encoded);
+            }
+            Long written = redis("fenced-set", () -> redisTemplate.execute(FENCED_SET_SCRIPT, keys, args.toArray()), null);
+            if (written != null && written == 0) {
+                localCache.invalidateAll(values.keySet());
+                logger.debug("Escritura de '{}' descartada: un lease más nuevo que {} ya escribió", fenceKey, lease.token());
+                return false;
+            }
+        } catch (ResponseStatusException e) {
+            throw e; // Re-lanzamos las excepciones de validación
+        } catch (Exception e) {
+            // Si Redis está caído, logueamos pero no lanzamos error para que la app continúe con el L1
+            logger.error("Error al guardar en cache: '{}': {}", fenceKey, e.getMessage());
+        }
+        localCache.putAll(values);
+        return true;
+    }
+
     //Borramos el cache
     public void delete(String key) {
         try {
             if (key == null || key.isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La clave no puede ser nula o vacía");
             }
-            redisTemplate.delete(key);
+            localCache.invalidate(key);
+            redis("delete", () -> {
+                redisTemplate.delete(key);
+                // Avisamos al resto de nodos para que también limpien su L1
+                return redisTemplate.convertAndSend(INVALIDATION_CHANNEL, key.getBytes(StandardCharsets.UTF_8));
+            }, null);
         } catch (ResponseStatusException e) {
             throw e; // Re-lanzamos las excepciones de validación
         } catch (Exception e) {
@@ -95,4 +429,50 @@ public class CacheService {
             logger.error("Error al eliminar del caché: '{}': {} " , e.getMessage(),key);
         }
     }
+
+    // Intentamos quedarnos con el lease de refresco de una llave (SET NX PX).
+    // Vacío significa que otro nodo ya está yendo a la API externa por esa llave
+    public Optional<FetchLease> tryAcquireLease(String key, long leaseMillis) {
+        try {
+            // Con el circuito abierto tampoco hay coordinación: se sigue sin lease
+            Long token = redis("lease", () -> redisTemplate.opsForValue().increment(LEASE_SEQUENCE), null);
+            if (token == null) {
+                return Optional.of(new FetchLease(key, FetchLease.UNFENCED));
+            }
+            Boolean acquired = redis("lease", () -> redisTemplate.opsForValue()
+                    .setIfAbsent(LEASE_PREFIX + key, tokenBytes(token), Duration.ofMillis(leaseMillis)), null);
+            if (acquired == null) {
+                return Optional.of(new FetchLease(key, FetchLease.UNFENCED));
+            }
+            return acquired ? Optional.of(new FetchLease(key, token)) : Optional.empty();
+        } catch (Exception e) {
+            // Sin Redis no hay coordinación posible: el nodo hace la petición por su cuenta
+            logger.error("Error al obtener el lease para '{}': {}", key, e.getMessage());
+            return Optional.of(new FetchLease(key, FetchLease.UNFENCED));
+        }
+    }
+
+    public void releaseLease(FetchLease lease) {
+        if (!lease.isFenced()) {
+            return;
+        }
+        try {
+            redis("release", () -> redisTemplate.execute(RELEASE_LEASE_SCRIPT, List.of(LEASE_PREFIX + lease.key()), tokenBytes(lease.token())), null);
+        } catch (Exception e) {
+            // El lease caduca solo por su TTL
+            logger.error("Error al liberar el lease para '{}': {}", lease.key(), e.getMessage());
+        }
+    }
+
+    private static byte[] tokenBytes(long token) {
+        return Long.toString(token).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Invalidación recibida por pub/sub desde cualquier nodo (incluido este)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String key = new String(message.getBody(), StandardCharsets.UTF_8);
+        localCache.invalidate(key);
+        logger.debug("L1 invalidado para la llave '{}'", key);
+    }
 }
@@ -0,0 +1,13 @@
+package com.jalveo.weatherAPI.service;
+
+// Lease de clúster para refrescar una llave de caché desde la API externa.
+// El token es monótono (INCR en Redis) y solo quien lo tiene puede liberar el lease.
+// Un token 0 indica que Redis no estaba disponible y el nodo va por su cuenta.
+public record FetchLease(String key, long token) {
+
+    public static final long UNFENCED = 0L;
+
+    public boolean isFenced() {
+        return token != UNFENCED;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jalveo.weatherAPI.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Count-min sketch con envejecimiento: estima cuántas veces se ha visto una llave usando memoria fija.
+// Cada sampleSize incrementos todos los contadores se dividen entre dos, así lo que dejó de pedirse
+// pierde peso y lo popular ahora sube rápido (mismo esquema que TinyLFU)
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicIntegerArray counters;
+    private final int mask;
+    private final long sampleSize;
+    private final AtomicLong additions = new AtomicLong();
+
+    public FrequencySketch(int width) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.counters = new AtomicIntegerArray(DEPTH * size);
+        this.mask = size - 1;
+        this.sampleSize = 10L * size;
+    }
+
+    public void increment(String key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < DEPTH; row++) {
+            counters.incrementAndGet(index(hash, row));
+        }
+        if (additions.incrementAndGet() % sampleSize == 0) {
+            halve();
+        }
+    }
+
+    // Mínimo de las filas: nunca subestima, solo puede sobreestimar por colisiones
+    public int estimate(String key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counters.get(index(hash, row)));
+        }
+        return min;
+    }
+
+    private int index(int hash, int row) {
+        int h = spread(hash * SEEDS[row]);
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+    }
+
+    private static int spread(int x) {
+        x ^= x >>> 16;
+        x *= 0x45D9F3B;
+        x ^= x >>> 16;
+        return x;
+    }
+}
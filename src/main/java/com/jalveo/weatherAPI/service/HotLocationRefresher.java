@@ -0,0 +1,73 @@
+package com.jalveo.weatherAPI.service;
+
+import com.jalveo.weatherAPI.DTOs.Request.LocationRequestDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// Refresco proactivo: cada intervalo revisa las ubicaciones más pedidas y refresca las que ya pasaron el TTL blando
+// antes de que lleguen al duro, aunque nadie las haya pedido desde entonces. Las poco pedidas simplemente caducan
+@Component
+public class HotLocationRefresher {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotLocationRefresher.class);
+
+    private final WeatherService weatherService;
+    private final AccessFrequencyTracker tracker;
+    private final Counter refreshes;
+
+    @Value("${weather.cache.hot-refresh.enabled:true}")
+    private boolean enabled;
+    @Value("${weather.cache.hot-refresh.top-k:50}")
+    private int topK;
+    // Límite de refrescos proactivos por minuto hacia la API externa
+    @Value("${weather.cache.hot-refresh.per-minute:60}")
+    private int refreshesPerMinute;
+    @Value("${weather.cache.hot-refresh.interval-ms:10000}")
+    private long intervalMillis;
+
+    public HotLocationRefresher(WeatherService weatherService, AccessFrequencyTracker tracker, MeterRegistry meterRegistry) {
+        this.weatherService = weatherService;
+        this.tracker = tracker;
+        this.refreshes = Counter.builder("weather.cache.hot_refreshes")
+                .description("Refrescos proactivos de ubicaciones populares")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${weather.cache.hot-refresh.interval-ms:10000}",
+            initialDelayString = "${weather.cache.hot-refresh.interval-ms:10000}")
+    public void refreshHotLocations() {
+        if (!enabled) {
+            return;
+        }
+        // Reparto del límite por minuto entre las ejecuciones del intervalo
+        long budget = Math.max(1, refreshesPerMinute * intervalMillis / 60_000);
+        try {
+            List<Map.Entry<String, LocationRequestDTO>> hottest = tracker.hottest(topK);
+            int started = 0;
+            for (Map.Entry<String, LocationRequestDTO> entry : hottest) {
+                if (started >= budget) {
+                    break;
+                }
+                LocationRequestDTO location = entry.getValue();
+                if (weatherService.refreshIfStale(location.getCity(), location.getCountry())) {
+                    started++;
+                }
+            }
+            refreshes.increment(started);
+            if (started > 0) {
+                logger.debug("Refresco proactivo de {} ubicaciones populares", started);
+            }
+        } catch (Exception e) {
+            // Un fallo aquí no debe parar el planificador; lo cacheado se sigue sirviendo
+            logger.warn("Error en el refresco proactivo: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.jalveo.weatherAPI.service;
+
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.config.LocalCacheConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+
+// Resolución de ubicaciones: "Madrid/ES", "madrid /Spain" y "Madrid, Comunidad de Madrid/España" comparten caché.
+// 1. Normalización de la entrada: minúsculas, sin acentos ni signos y el país como código ISO ("madrid:es")
+// 2. Índice de alias en Redis (weather:alias:<alias> -> id canónico) que se aprende de cada respuesta de la API
+//    externa: las coordenadas redondeadas o, si no vienen, el resolvedAddress normalizado
+// 3. Los alias más pedidos quedan en el L1 (TTL propio, weather.cache.l1.ttl.alias), así que resolver cuesta
+//    una búsqueda en memoria
+@Service
+public class LocationResolver {
+
+    // Nombres de país (inglés y español), códigos ISO de 2 y 3 letras y algunas abreviaturas -> código ISO de 2 letras
+    private static final Map<String, String> COUNTRY_CODES = countryCodes();
+
+    private final CacheService cacheService;
+    private final long aliasTtlSeconds;
+
+    public LocationResolver(CacheService cacheService,
+                            @Value("${weather.location.alias-ttl-seconds:2592000}") long aliasTtlSeconds) {
+        this.cacheService = cacheService;
+        this.aliasTtlSeconds = aliasTtlSeconds;
+    }
+
+    ResolvedLocation resolve(String city, String country) {
+        String alias = alias(city, country);
+        String id = cacheService.getText(LocalCacheConfig.ALIAS_PREFIX + alias).orElse(alias);
+        return new ResolvedLocation(city.trim(), country.trim(), alias, id);
+    }
+
+    // Varias ubicaciones con un único MGET para los alias que no estén en el L1
+    List<ResolvedLocation> resolveAll(List<String> cities, List<String> countries) {
+        List<String> aliasKeys = new ArrayList<>(cities.size());
+        for (int i = 0; i < cities.size(); i++) {
+            aliasKeys.add(LocalCacheConfig.ALIAS_PREFIX + alias(cities.get(i), countries.get(i)));
+        }
+        Map<String, String> ids = cacheService.multiGetText(aliasKeys);
+
+        List<ResolvedLocation> locations = new ArrayList<>(cities.size());
+        for (int i = 0; i < cities.size(); i++) {
+            String aliasKey = aliasKeys.get(i);
+            String alias = aliasKey.substring(LocalCacheConfig.ALIAS_PREFIX.length());
+            locations.add(new ResolvedLocation(cities.get(i).trim(), countries.get(i).trim(), alias,
+                    ids.getOrDefault(aliasKey, alias)));
+        }
+        return locations;
+    }
+
+    // Id canónico de la respuesta de la API externa; guarda el alias si todavía no apuntaba a él.
+    // Devuelve el id con el que se deben guardar los datos de esa respuesta
+    String learn(ResolvedLocation location, LocationTimelineDTO timeline) {
+        String canonical = canonicalId(timeline);
+        if (canonical == null) {
+            return location.id();
+        }
+        if (!canonical.equals(location.id())) {
+            cacheService.saveText(LocalCacheConfig.ALIAS_PREFIX + location.alias(), canonical, aliasTtlSeconds);
+        }
+        return canonical;
+    }
+
+    void forget(ResolvedLocation location) {
+        cacheService.delete(LocalCacheConfig.ALIAS_PREFIX + location.alias());
+    }
+
+    static String alias(String city, String country) {
+        String normalizedCity = normalize(city);
+        return (normalizedCity.isEmpty() ? city.trim().toLowerCase(Locale.ROOT) : normalizedCity) + ":" + countryCode(country);
+    }
+
+    static String countryCode(String country) {
+        String normalized = normalize(country);
+        return COUNTRY_CODES.getOrDefault(normalized, normalized);
+    }
+
+    // Coordenadas redondeadas a 2 decimales (~1 km: mismo clima) o el resolvedAddress normalizado.
+    // Ninguno lleva ':', así que un id canónico nunca se confunde con un alias
+    static String canonicalId(LocationTimelineDTO timeline) {
+        if (timeline.getLatitude() != null && timeline.getLongitude() != null) {
+            // + 0.0 convierte -0.0 en 0.0 para que el ecuador y Greenwich no tengan dos ids
+            double latitude = Math.round(timeline.getLatitude() * 100) / 100.0 + 0.0;
+            double longitude = Math.round(timeline.getLongitude() * 100) / 100.0 + 0.0;
+            return String.format(Locale.ROOT, "%.2f,%.2f", latitude, longitude);
+        }
+        if (timeline.getResolvedAddress() != null) {
+            String address = normalize(timeline.getResolvedAddress());
+            return address.isEmpty() ? null : address.replace(' ', '-');
+        }
+        return null;
+    }
+
+    // Minúsculas, sin marcas diacríticas (NFD) y cualquier secuencia de signos o espacios como un solo espacio
+    static String normalize(String text) {
+        String source = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                source = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder out = new StringBuilder(source.length());
+        boolean separator = false;
+        for (int i = 0; i < source.length(); ) {
+            int codePoint = source.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int type = Character.getType(codePoint);
+            if (type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK
+                    || type == Character.ENCLOSING_MARK) {
+                continue;
+            }
+            if (!Character.isLetterOrDigit(codePoint)) {
+                separator = true;
+                continue;
+            }
+            if (separator && !out.isEmpty()) {
+                out.append(' ');
+            }
+            separator = false;
+            out.appendCodePoint(Character.toLowerCase(codePoint));
+        }
+        return out.toString();
+    }
+
+    private static Map<String, String> countryCodes() {
+        Map<String, String> codes = new HashMap<>();
+        Collection<Locale> languages = List.of(Locale.ENGLISH, Locale.forLanguageTag("es"));
+        for (String iso : Locale.getISOCountries()) {
+            String code = iso.toLowerCase(Locale.ROOT);
+            Locale locale = new Locale.Builder().setRegion(iso).build();
+            codes.put(code, code);
+            try {
+                codes.putIfAbsent(normalize(locale.getISO3Country()), code);
+            } catch (MissingResourceException e) {
+                // Sin código de 3 letras: basta con el de 2 y los nombres
+            }
+            for (Locale language : languages) {
+                codes.putIfAbsent(normalize(locale.getDisplayCountry(language)), code);
+            }
+        }
+        codes.put("usa", "us");
+        codes.put("eeuu", "us");
+        codes.put("ee uu", "us");
+        codes.put("uk", "gb");
+        codes.put("england", "gb");
+        codes.put("great britain", "gb");
+        return Map.copyOf(codes);
+    }
+}
@@ -0,0 +1,172 @@
+package com.jalveo.weatherAPI.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Circuit breaker para las operaciones de Redis de CacheService.
+// Ventana deslizante con las últimas N llamadas: si la tasa de errores o de llamadas lentas supera el umbral,
+// el circuito se abre y las llamadas se cortan al instante (CacheService sigue con el L1 o con la API externa).
+// Pasado open-ms se deja pasar unas pocas llamadas de prueba: si todas van bien se cierra, si no se vuelve a abrir
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    // Resultado de las últimas llamadas: 0 = bien, 1 = error, 2 = lenta
+    private final byte[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final Counter rejected;
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+
+    public RedisCircuitBreaker(@Value("${weather.cache.breaker.window-size:50}") int windowSize,
+                               @Value("${weather.cache.breaker.minimum-calls:10}") int minimumCalls,
+                               @Value("${weather.cache.breaker.failure-rate:0.5}") double failureRateThreshold,
+                               @Value("${weather.cache.breaker.slow-rate:0.5}") double slowRateThreshold,
+                               @Value("${weather.cache.breaker.slow-call-ms:200}") long slowCallMillis,
+                               @Value("${weather.cache.breaker.open-ms:5000}") long openMillis,
+                               @Value("${weather.cache.breaker.half-open-probes:3}") int halfOpenProbes,
+                               MeterRegistry meterRegistry) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowRateThreshold = slowRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.window = new byte[this.windowSize];
+
+        Gauge.builder("weather.cache.redis.breaker.state", this, breaker -> breaker.state.ordinal())
+                .description("Estado del circuit breaker de Redis (0 = cerrado, 1 = abierto, 2 = semiabierto)")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("weather.cache.redis.breaker.rejected")
+                .description("Llamadas a Redis cortadas con el circuito abierto")
+                .register(meterRegistry);
+        for (State to : State.values()) {
+            transitions.put(to, Counter.builder("weather.cache.redis.breaker.transitions")
+                    .description("Cambios de estado del circuit breaker de Redis")
+                    .tag("to", to.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    public State state() {
+        return state;
+    }
+
+    // true si la llamada puede ir a Redis. Con el circuito cerrado no toma ningún lock
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                transition(State.HALF_OPEN);
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+                probesStarted++;
+                return true;
+            }
+            if (state == State.CLOSED) {
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void onSuccess(long elapsedNanos) {
+        record(elapsedNanos >= slowCallNanos ? (byte) 2 : (byte) 0);
+    }
+
+    public void onError() {
+        record((byte) 1);
+    }
+
+    private synchronized void record(byte outcome) {
+        if (state == State.HALF_OPEN) {
+            if (outcome != 0) {
+                open();
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                resetWindow();
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // Llamadas que empezaron antes de abrirse
+        }
+
+        byte previous = window[position];
+        if (recorded == windowSize) {
+            if (previous == 1) failures--;
+            if (previous == 2) slowCalls--;
+        } else {
+            recorded++;
+        }
+        window[position] = outcome;
+        position = (position + 1) % windowSize;
+        if (outcome == 1) failures++;
+        if (outcome == 2) slowCalls++;
+
+        if (recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                || (double) slowCalls / recorded >= slowRateThreshold)) {
+            logger.warn("Redis con {} errores y {} llamadas lentas en las últimas {}: se abre el circuito",
+                    failures, slowCalls, recorded);
+            open();
+        }
+    }
+
+    private void open() {
+        openedAt = System.nanoTime();
+        resetWindow();
+        transition(State.OPEN);
+    }
+
+    private void resetWindow() {
+        position = 0;
+        recorded = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+
+    private void transition(State to) {
+        if (state != to) {
+            logger.info("Circuit breaker de Redis: {} -> {}", state, to);
+            state = to;
+            transitions.get(to).increment();
+        }
+    }
+}
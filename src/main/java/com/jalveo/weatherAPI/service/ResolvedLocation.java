@@ -0,0 +1,13 @@
+package com.jalveo.weatherAPI.service;
+
+// Ubicación de una petición ya resuelta por LocationResolver:
+// - city y country tal como llegaron (sin espacios sobrantes); son los que se mandan a la API externa
+// - alias: la variante normalizada ("madrid:es")
+// - id: la ubicación canónica si el alias ya se conoce, o el propio alias mientras tanto; las llaves de caché salen de aquí
+record ResolvedLocation(String city, String country, String alias, String id) {
+
+    // Todavía no se sabe a qué ubicación canónica corresponde el alias
+    boolean isProvisional() {
+        return alias.equals(id);
+    }
+}
@@ -0,0 +1,94 @@
+package com.jalveo.weatherAPI.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Cuerpos de respuesta ya serializados a JSON y comprimidos, por ETag y Content-Encoding.
+// Un acierto escribe los bytes tal cual: ni Jackson ni gzip por petición. El ETag lleva el hash del contenido,
+// así que un timeline nuevo usa llaves nuevas y no hace falta invalidar; las viejas salen por peso o TTL.
+// Es local a cada nodo: los bytes se rehacen con la primera petición de cada versión
+@Service
+public class ResponseBodyCache {
+
+    public static final String IDENTITY = "identity";
+    public static final String GZIP = "gzip";
+
+    private final JsonMapper jsonMapper;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, byte[]> bodies;
+    private final Map<String, Counter> gets = new ConcurrentHashMap<>();
+
+    // Mismo JsonMapper que usa Spring MVC: los bytes cacheados son idénticos a los que escribiría el conversor
+    public ResponseBodyCache(JsonMapper jsonMapper, MeterRegistry meterRegistry,
+                             @Value("${weather.response-cache.maximum-bytes:67108864}") long maximumBytes,
+                             @Value("${weather.response-cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.jsonMapper = jsonMapper;
+        this.meterRegistry = meterRegistry;
+        this.bodies = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((String key, byte[] body) -> body.length)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public Optional<byte[]> get(String etag, String encoding) {
+        byte[] body = bodies.getIfPresent(key(etag, encoding));
+        count(encoding, body != null ? "hit" : "miss");
+        return Optional.ofNullable(body);
+    }
+
+    // Serializa una sola vez, guarda todas las codificaciones y devuelve la pedida.
+    // Sin ETag (sin meta del timeline) no hay llave estable: se serializa sin guardar
+    public byte[] put(String etag, Object body, String encoding) {
+        byte[] identity = jsonMapper.writeValueAsBytes(body);
+        byte[] gzip = GZIP.equals(encoding) || etag != null ? gzip(identity) : null;
+        if (etag != null) {
+            bodies.put(key(etag, IDENTITY), identity);
+            bodies.put(key(etag, GZIP), gzip);
+        }
+        return GZIP.equals(encoding) ? gzip : identity;
+    }
+
+    private static String key(String etag, String encoding) {
+        return etag + '|' + encoding;
+    }
+
+    // Se comprime una vez por versión del contenido, así que compensa el nivel máximo
+    private static byte[] gzip(byte[] identity) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, identity.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(identity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private void count(String encoding, String result) {
+        gets.computeIfAbsent(encoding + '|' + result, id -> Counter.builder("weather.response.cache.gets")
+                        .description("Lecturas del caché de cuerpos de respuesta por codificación y resultado")
+                        .tag("encoding", encoding)
+                        .tag("result", result)
+                        .register(meterRegistry))
+                .increment();
+    }
+}
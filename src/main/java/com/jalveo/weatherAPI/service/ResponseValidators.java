@@ -0,0 +1,31 @@
+package com.jalveo.weatherAPI.service;
+
+import java.util.List;
+
+// Validadores HTTP de una respuesta derivada del timeline cacheado: ETag fuerte, Last-Modified (hora de la
+// consulta a la API externa) y los segundos que quedan hasta el TTL blando (max-age) y el duro (stale-while-revalidate)
+public record ResponseValidators(String etag, long lastModified, long maxAgeSeconds, long staleWhileRevalidateSeconds) {
+
+    // Cada codificación es otra representación y lleva su propio ETag fuerte: "<etag>-gzip"
+    public String etag(String encoding) {
+        if (ResponseBodyCache.IDENTITY.equals(encoding)) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + '-' + encoding + '"';
+    }
+
+    // If-None-Match manda sobre If-Modified-Since (RFC 9110); sin ninguno de los dos no hay 304
+    public boolean notModified(List<String> ifNoneMatch, long ifModifiedSince) {
+        if (ifNoneMatch != null && !ifNoneMatch.isEmpty()) {
+            for (String candidate : ifNoneMatch) {
+                // Comparación débil, como pide la RFC para If-None-Match; los datos son los mismos en cualquier codificación
+                String tag = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(etag(ResponseBodyCache.GZIP))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+}
@@ -0,0 +1,83 @@
+package com.jalveo.weatherAPI.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+// Agrupa las cargas concurrentes de una misma llave: el primer hilo ejecuta la carga
+// y el resto espera y comparte su resultado (o su excepción).
+public class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return (T) await(existing);
+        }
+
+        try {
+            T result = loader.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Variante sin bloquear: la carga corre en executor y quien llegue mientras tanto recibe el mismo resultado.
+    // Si el executor rechaza la tarea, todos los que esperan reciben esa excepción
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Supplier<T> loader, Executor executor) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.thenApply(value -> (T) value);
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    mine.complete(loader.get());
+                } catch (RuntimeException | Error e) {
+                    mine.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(key, mine);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+        }
+        return mine.thenApply(value -> (T) value);
+    }
+
+    // Número de cargas en curso (útil para métricas y pruebas)
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Propagamos la excepción original para que los catch de WeatherService sigan funcionando
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.jalveo.weatherAPI.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.TimelineDayDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+// Parser en streaming de la respuesta del timeline de Visual Crossing.
+// Lee directamente del InputStream y solo extrae los campos que usa LocationTimelineDTO;
+// los arrays "hours", "stations", "alerts", etc. se saltan sin construir objetos.
+@Component
+public class TimelineParser {
+
+    // JsonFactory es thread-safe y se comparte entre peticiones
+    private final JsonFactory jsonFactory = new JsonFactory();
+    // Al ser en streaming, el tiempo de parseo incluye la lectura del cuerpo desde la red
+    private final Timer parseTimer;
+    private final DistributionSummary payloadSize;
+
+    public TimelineParser(MeterRegistry meterRegistry) {
+        this.parseTimer = Timer.builder("weather.upstream.parse")
+                .description("Tiempo de lectura y parseo de la respuesta de la API de clima")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.payloadSize = DistributionSummary.builder("weather.upstream.payload")
+                .description("Tamaño de la respuesta de la API de clima")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public LocationTimelineDTO parse(InputStream body) throws IOException {
+        if (body == null) {
+            throw new ResponseStatusException(HttpStatus.NO_CONTENT, "La API no devolvió ningún dato");
+        }
+        CountingInputStream counting = new CountingInputStream(body);
+        long start = System.nanoTime();
+        try {
+            LocationTimelineDTO timeline = parseTimeline(counting);
+            timeline.setContentHash(counting.hash());
+            return timeline;
+        } finally {
+            parseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            payloadSize.record(counting.count);
+        }
+    }
+
+    private LocationTimelineDTO parseTimeline(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                throw new ResponseStatusException(HttpStatus.NO_CONTENT, "La API no devolvió ningún dato");
+            }
+            if (first != JsonToken.START_OBJECT) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Respuesta JSON inválida");
+            }
+
+            LocationTimelineDTO timeline = new LocationTimelineDTO();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "resolvedAddress" -> timeline.setResolvedAddress(text(parser));
+                    case "latitude" -> timeline.setLatitude(coordinate(parser));
+                    case "longitude" -> timeline.setLongitude(coordinate(parser));
+                    case "description" -> timeline.setDescription(text(parser));
+                    case "days" -> timeline.setDays(days(parser));
+                    case "queryCost" -> timeline.setQueryCost((long) number(parser));
+                    default -> parser.skipChildren();
+                }
+            }
+            return timeline;
+        }
+    }
+
+    private static List<TimelineDayDTO> days(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        List<TimelineDayDTO> days = new ArrayList<>(16);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token == JsonToken.START_OBJECT) {
+                days.add(day(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return days;
+    }
+
+    private static TimelineDayDTO day(JsonParser parser) throws IOException {
+        TimelineDayDTO day = new TimelineDayDTO();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "datetime" -> day.setDatetime(date(parser));
+                case "tempmax" -> day.setTempmax(number(parser));
+                case "tempmin" -> day.setTempmin(number(parser));
+                case "temp" -> day.setTemp(number(parser));
+                case "humidity" -> day.setHumidity(number(parser));
+                case "windspeed" -> day.setWindspeed(number(parser));
+                case "conditions" -> day.setConditions(text(parser));
+                case "description" -> day.setDescription(text(parser));
+                case "icon" -> day.setIcon(text(parser));
+                case "sunrise" -> day.setSunrise(text(parser));
+                case "sunset" -> day.setSunset(text(parser));
+                // "hours" y el resto de elementos se saltan sin materializarlos
+                default -> parser.skipChildren();
+            }
+        }
+        return day;
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getValueAsString();
+    }
+
+    private static double number(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return 0.0;
+        }
+        return parser.getValueAsDouble(0.0);
+    }
+
+    // null si no viene como número: sin coordenadas el id canónico sale del resolvedAddress
+    private static Double coordinate(JsonParser parser) throws IOException {
+        if (!parser.currentToken().isNumeric()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getDoubleValue();
+    }
+
+    private static LocalDate date(JsonParser parser) throws IOException {
+        String value = text(parser);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al procesar los datos del clima", e);
+        }
+    }
+
+    // Cuenta los bytes leídos y calcula su CRC32C (con intrínsecos de CPU, mucho más barato que el parseo)
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+        private final CRC32C crc = new CRC32C();
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+                crc.update(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+                crc.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        // Se lee en lugar de saltar para que los bytes entren en el hash
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        String hash() {
+            return String.format("%08x%08x", crc.getValue(), count & 0xffffffffL);
+        }
+    }
+}
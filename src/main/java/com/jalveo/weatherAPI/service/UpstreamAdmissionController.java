@@ -0,0 +1,292 @@
+package com.jalveo.weatherAPI.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Control de admisión delante de la API externa:
+// - token bucket de peticiones por segundo y presupuesto diario de coste (registros de Visual Crossing)
+// - cola de espera acotada donde se atiende primero USER, luego REFRESH y por último WARMUP
+// - se pausa solo cuando la API responde 429 o anuncia que no quedan peticiones en sus cabeceras
+// Si no hay hueco a tiempo se lanza UpstreamSaturatedException (503 con Retry-After)
+@Component
+public class UpstreamAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamAdmissionController.class);
+    private static final long DEFAULT_PAUSE_SECONDS = 60;
+
+    private final double ratePerSecond;
+    private final double burst;
+    private final long dailyCostBudget;
+    private final double backgroundBudgetRatio;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    // Esperas ordenadas por prioridad y, dentro de la misma prioridad, por orden de llegada
+    private final TreeSet<Waiter> waiters = new TreeSet<>(Comparator
+            .comparingInt((Waiter waiter) -> waiter.priority().ordinal())
+            .thenComparingLong(Waiter::ticket));
+    private long nextTicket;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long pausedUntilMillis;
+    private LocalDate budgetDay = LocalDate.now(ZoneOffset.UTC);
+    private long costSpent;
+
+    private final Map<UpstreamPriority, Counter> admitted = new EnumMap<>(UpstreamPriority.class);
+    private final Map<UpstreamPriority, Counter> rejected = new EnumMap<>(UpstreamPriority.class);
+
+    private record Waiter(UpstreamPriority priority, long ticket) {
+    }
+
+    public UpstreamAdmissionController(@Value("${weather.upstream.admission.rate-per-second:10}") double ratePerSecond,
+                                       @Value("${weather.upstream.admission.burst:20}") int burst,
+                                       @Value("${weather.upstream.admission.daily-cost-budget:0}") long dailyCostBudget,
+                                       @Value("${weather.upstream.admission.background-budget-ratio:0.8}") double backgroundBudgetRatio,
+                                       @Value("${weather.upstream.admission.queue-capacity:100}") int queueCapacity,
+                                       @Value("${weather.upstream.admission.max-wait-ms:2000}") long maxWaitMillis,
+                                       MeterRegistry meterRegistry) {
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, burst);
+        this.dailyCostBudget = dailyCostBudget;
+        this.backgroundBudgetRatio = backgroundBudgetRatio;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.tokens = this.burst;
+
+        for (UpstreamPriority priority : UpstreamPriority.values()) {
+            admitted.put(priority, admissionCounter(meterRegistry, priority, "admitted"));
+            rejected.put(priority, admissionCounter(meterRegistry, priority, "rejected"));
+        }
+        Gauge.builder("weather.upstream.admission.waiting", waiters, TreeSet::size)
+                .description("Peticiones esperando turno para la API de clima")
+                .register(meterRegistry);
+    }
+
+    private static Counter admissionCounter(MeterRegistry registry, UpstreamPriority priority, String result) {
+        return Counter.builder("weather.upstream.admission")
+                .description("Decisiones de admisión hacia la API de clima")
+                .tag("priority", priority.name().toLowerCase())
+                .tag("result", result)
+                .register(registry);
+    }
+
+    // Bloquea hasta que la petición pueda salir o lanza UpstreamSaturatedException.
+    // estimatedCost es el coste previsto en registros (días pedidos); se corrige luego con adjustCost
+    public void acquire(UpstreamPriority priority, long estimatedCost) {
+        lock.lock();
+        try {
+            checkBudget(priority, estimatedCost);
+            // Las peticiones en segundo plano solo pueden ocupar la mitad de la cola
+            int capacity = priority == UpstreamPriority.USER ? queueCapacity : Math.max(1, queueCapacity / 2);
+            if (waiters.size() >= capacity) {
+                throw reject(priority, null);
+            }
+
+            Waiter me = new Waiter(priority, nextTicket++);
+            waiters.add(me);
+            long deadline = System.nanoTime() + maxWaitNanos;
+            try {
+                while (true) {
+                    refill();
+                    long pauseNanos = TimeUnit.MILLISECONDS.toNanos(pausedUntilMillis - System.currentTimeMillis());
+                    if (waiters.first() == me && pauseNanos <= 0 && tokens >= 1) {
+                        checkBudget(priority, estimatedCost);
+                        tokens -= 1;
+                        costSpent += estimatedCost;
+                        admitted.get(priority).increment();
+                        return;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw reject(priority, null);
+                    }
+                    long wait = pauseNanos > 0 ? pauseNanos : nanosUntilNextToken();
+                    changed.awaitNanos(Math.max(1, Math.min(wait, remaining)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(priority, e);
+            } finally {
+                waiters.remove(me);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Corrige el coste con el queryCost real que devolvió la API
+    public void adjustCost(long delta) {
+        if (delta == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            costSpent = Math.max(0, costSpent + delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ajuste automático a partir de la respuesta de la API: 429 con Retry-After
+    // o cabeceras de rate limit (X-RateLimit-* / RateLimit-*) que indiquen que no quedan peticiones
+    public void onResponse(int status, HttpHeaders headers) {
+        long pauseSeconds = -1;
+        if (status == 429) {
+            pauseSeconds = parseRetryAfter(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        } else {
+            String remaining = firstHeader(headers, "X-RateLimit-Remaining", "RateLimit-Remaining");
+            if (remaining != null && parseLong(remaining, 1) <= 0) {
+                pauseSeconds = parseReset(firstHeader(headers, "X-RateLimit-Reset", "RateLimit-Reset"));
+            }
+        }
+        if (pauseSeconds >= 0) {
+            pause(pauseSeconds);
+        }
+    }
+
+    public void pause(long seconds) {
+        lock.lock();
+        try {
+            long until = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(Math.max(1, seconds));
+            if (until > pausedUntilMillis) {
+                pausedUntilMillis = until;
+                tokens = 0;
+                logger.warn("Límite de la API de clima alcanzado, se pausan las peticiones {}s", Math.max(1, seconds));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Segundos recomendados antes de reintentar (para Retry-After)
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            long pauseMillis = pausedUntilMillis - System.currentTimeMillis();
+            if (pauseMillis > 0) {
+                return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(pauseMillis + 999));
+            }
+            if (dailyCostBudget > 0 && costSpent >= dailyCostBudget) {
+                return secondsUntilBudgetReset();
+            }
+            return Math.max(1, (long) Math.ceil((waiters.size() + 1) / ratePerSecond));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Sin presupuesto no tiene sentido esperar: se rechaza enseguida.
+    // Las peticiones en segundo plano solo pueden gastar una parte, el resto queda para los usuarios
+    private void checkBudget(UpstreamPriority priority, long cost) {
+        if (dailyCostBudget <= 0) {
+            return;
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (!today.equals(budgetDay)) {
+            budgetDay = today;
+            costSpent = 0;
+        }
+        long limit = priority == UpstreamPriority.USER ? dailyCostBudget : (long) (dailyCostBudget * backgroundBudgetRatio);
+        if (costSpent + cost > limit) {
+            rejected.get(priority).increment();
+            throw new UpstreamSaturatedException(secondsUntilBudgetReset(), null);
+        }
+    }
+
+    private UpstreamSaturatedException reject(UpstreamPriority priority, Throwable cause) {
+        rejected.get(priority).increment();
+        return new UpstreamSaturatedException(retryAfterSeconds(), cause);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    private long nanosUntilNextToken() {
+        if (tokens >= 1) {
+            // Hay token pero no es nuestro turno: esperamos a que avise quien va delante
+            return maxWaitNanos;
+        }
+        return (long) Math.ceil((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+    }
+
+    private static long secondsUntilBudgetReset() {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(ZoneOffset.UTC);
+        return Math.max(1, midnight.toEpochSecond() - now.toEpochSecond());
+    }
+
+    private static String firstHeader(HttpHeaders headers, String... names) {
+        for (String name : names) {
+            String value = headers.getFirst(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    // Retry-After puede venir en segundos o como fecha HTTP
+    private static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT_PAUSE_SECONDS;
+        }
+        long seconds = parseLong(value, -1);
+        if (seconds >= 0) {
+            return seconds;
+        }
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(1, date.toEpochSecond() - ZonedDateTime.now(ZoneOffset.UTC).toEpochSecond());
+        } catch (DateTimeParseException e) {
+            return DEFAULT_PAUSE_SECONDS;
+        }
+    }
+
+    // El reset puede ser un número de segundos o un instante epoch (en segundos)
+    private static long parseReset(String value) {
+        long reset = parseLong(value, -1);
+        if (reset < 0) {
+            return DEFAULT_PAUSE_SECONDS;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        return reset > 1_000_000_000L ? Math.max(1, reset - now) : reset;
+    }
+
+    private static long parseLong(String value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
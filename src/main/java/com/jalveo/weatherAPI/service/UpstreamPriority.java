@@ -0,0 +1,11 @@
+package com.jalveo.weatherAPI.service;
+
+// Clases de prioridad para las peticiones a la API externa, de mayor a menor
+public enum UpstreamPriority {
+    // Fallo de caché con un usuario esperando la respuesta
+    USER,
+    // Refresco en segundo plano de un valor obsoleto (stale-while-revalidate)
+    REFRESH,
+    // Precarga o refresco proactivo de ubicaciones populares
+    WARMUP
+}
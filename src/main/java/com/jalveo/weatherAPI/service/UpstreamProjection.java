@@ -0,0 +1,56 @@
+package com.jalveo.weatherAPI.service;
+
+import com.jalveo.weatherAPI.DTOs.Cache.DaySeries;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Lo que se le pide a la API externa (include= y elements=) según lo que usa cada endpoint:
+// solo los días, sin horas, condiciones actuales, alertas ni estaciones, y de cada día solo los campos de su DTO.
+// Los conjuntos van ordenados para que la URL sea siempre la misma
+record UpstreamProjection(Set<String> include, Set<String> elements) {
+
+    // TodayWeatherDTO: la descripción general y los campos del primer día
+    static final UpstreamProjection TODAY = of("datetime", "description", "temp", "tempmax", "tempmin", "humidity",
+            "conditions", "icon", "sunrise", "sunset");
+
+    // MonthWeatherDTO
+    static final UpstreamProjection DAYS = of("datetime", "tempmax", "tempmin", "temp", "humidity", "windspeed",
+            "conditions", "description", "icon");
+
+    // DaySeries: las columnas numéricas más los diccionarios de conditions e icon
+    static final UpstreamProjection STATS = of("datetime", "conditions", "icon").merge(of(
+            Arrays.stream(DaySeries.Field.values()).map(DaySeries.Field::paramName).toArray(String[]::new)));
+
+    // El timeline canónico sirve a los tres endpoints, así que pide la unión de sus campos
+    static final UpstreamProjection TIMELINE = TODAY.merge(DAYS).merge(STATS);
+
+    // Las ventanas de /days?from&to solo alimentan el pronóstico por días y las estadísticas
+    static final UpstreamProjection DAY_WINDOW = DAYS.merge(STATS);
+
+    private static UpstreamProjection of(String... elements) {
+        return new UpstreamProjection(sorted(Set.of("days")), sorted(Set.of(elements)));
+    }
+
+    private static Set<String> sorted(Set<String> values) {
+        return Collections.unmodifiableSet(new TreeSet<>(values));
+    }
+
+    UpstreamProjection merge(UpstreamProjection other) {
+        Set<String> include = new TreeSet<>(this.include);
+        include.addAll(other.include);
+        Set<String> elements = new TreeSet<>(this.elements);
+        elements.addAll(other.elements);
+        return new UpstreamProjection(Collections.unmodifiableSet(include), Collections.unmodifiableSet(elements));
+    }
+
+    String includeParam() {
+        return String.join(",", include);
+    }
+
+    String elementsParam() {
+        return String.join(",", elements);
+    }
+}
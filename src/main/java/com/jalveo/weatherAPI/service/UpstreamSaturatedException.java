@@ -0,0 +1,28 @@
+package com.jalveo.weatherAPI.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// La API externa no admite más peticiones ahora mismo (límite local o 429 de Visual Crossing).
+// Se responde 503 con Retry-After para que el cliente sepa cuándo volver a intentarlo
+public class UpstreamSaturatedException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public UpstreamSaturatedException(long retryAfterSeconds, Throwable cause) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "El servicio de clima está saturado, inténtelo más tarde", cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return headers;
+    }
+}
@@ -0,0 +1,15 @@
+package com.jalveo.weatherAPI.service;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+// Cuerpo de un endpoint junto a los validadores de la misma versión del timeline de la que salió: si un refresco
+// cambia el timeline entre la consulta de los validadores y la del cuerpo, el ETag sigue describiendo el cuerpo.
+// Sin validadores cuando el cuerpo no sale de una versión con meta (por ejemplo, un rango pedido aparte a la API)
+public record VersionedResponse<T>(T body, Optional<ResponseValidators> validators) {
+
+    // Otra proyección del mismo cuerpo: conserva los validadores
+    public <U> VersionedResponse<U> map(Function<T, U> projection) {
+        return new VersionedResponse<>(projection.apply(body), validators);
+    }
+}
@@ -1,15 +1,23 @@
 package com.jalveo.weatherAPI.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.jalveo.weatherAPI.DTOs.Cache.CachedDayDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.DaySeries;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.TimelineDayDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.TimelineMetaDTO;
+import com.jalveo.weatherAPI.DTOs.Request.LocationRequestDTO;
+import com.jalveo.weatherAPI.DTOs.Response.BatchWeatherItemDTO;
+import com.jalveo.weatherAPI.DTOs.Response.DayStatsDTO;
+import com.jalveo.weatherAPI.DTOs.Response.FieldStatsDTO;
 import com.jalveo.weatherAPI.DTOs.Response.MonthWeatherDTO;
 import com.jalveo.weatherAPI.DTOs.Response.TodayWeatherDTO;
+import com.jalveo.weatherAPI.config.LocalCacheConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
@@ -18,29 +26,114 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
 
 @Service
 public class WeatherService {
     private static final Logger logger = LoggerFactory.getLogger(WeatherService.class);
+    private static final long MAX_LEASE_POLL_MILLIS = 500;
+    private static final String DAYS_PREFIX = "weather:days:";
+    private static final String META_PREFIX = "weather:meta:";
     private final RestTemplate restTemplate;
     private final CacheService cacheServiceObj;
+    private final TimelineParser timelineParser;
+    private final LocationResolver locationResolver;
+    private final AccessFrequencyTracker accessTracker;
+    private final UpstreamAdmissionController admissionController;
 
     @Value("${weather.api.key}")
     private String apiKey;
     @Value("${weather.api.base-url}")
     private String baseUrl;
-    private String responseString;
+    // Duración del lease de clúster y pausa inicial entre sondeos mientras otro nodo refresca.
+    // El lease debe durar más que la peor petición a la API externa: espera de admisión (2 s), conexión del pool
+    // (1 s), connect (5 s) y lectura (5 s); si no, los demás nodos dejan de esperar justo cuando la API va lenta
+    @Value("${weather.cache.lease.ttl-ms:15000}")
+    private long leaseMillis;
+    @Value("${weather.cache.lease.poll-ms:100}")
+    private long leasePollMillis;
+    // TTL blando (a partir de aquí se refresca en segundo plano) y duro (expiración en Redis), en segundos
+    @Value("${weather.cache.soft-ttl-seconds:900}")
+    private long softTtlSeconds;
+    @Value("${weather.cache.hard-ttl-seconds:3600}")
+    private long hardTtlSeconds;
+    // Peticiones a la API externa en curso, agrupadas por llave de caché
+    private final SingleFlight singleFlight = new SingleFlight();
+    // Cargas del modo async en curso; separado de singleFlight porque la carga async entra en getTimeline
+    private final SingleFlight asyncFlight = new SingleFlight();
+    // Llaves con un refresco en segundo plano pendiente en este nodo
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Executor refreshExecutor;
+    private final Executor batchExecutor;
+    private final Executor upstreamExecutor;
+    @Value("${weather.batch.max-size:500}")
+    private int batchMaxSize;
+    // Máximo de días que se pueden pedir en un rango de /days
+    @Value("${weather.days.max-range:31}")
+    private int maxRangeDays;
+    // Coste estimado (registros) de pedir el timeline completo, antes de conocer el queryCost real
+    @Value("${weather.upstream.admission.timeline-cost:15}")
+    private long timelineCost;
+    // Con la API saturada se sirve lo cacheado aunque haya pasado el TTL duro (si sigue en Redis) en lugar de un 503
+    @Value("${weather.upstream.admission.serve-stale-on-saturation:true}")
+    private boolean serveStaleOnSaturation;
+    // Tiempo extra que Redis conserva el timeline tras el TTL duro, solo para servirlo si la API está saturada
+    @Value("${weather.cache.stale-grace-seconds:3600}")
+    private long staleGraceSeconds;
+    // Pedir a la API externa solo los días y los campos que usan los endpoints (include= y elements=)
+    @Value("${weather.upstream.projection.enabled:true}")
+    private boolean projectionEnabled;
 
 
-    public WeatherService(RestTemplate restTemplate, CacheService cacheService) {
+    public WeatherService(RestTemplate restTemplate, CacheService cacheService, TimelineParser timelineParser,
+                          LocationResolver locationResolver, AccessFrequencyTracker accessTracker, UpstreamAdmissionController admissionController,
+                          @Qualifier("refreshExecutor") Executor refreshExecutor,
+                          @Qualifier("batchExecutor") Executor batchExecutor,
+                          @Qualifier("upstreamExecutor") Executor upstreamExecutor) {
         this.restTemplate = restTemplate;
+        this.refreshExecutor = refreshExecutor;
+        this.batchExecutor = batchExecutor;
+        this.upstreamExecutor = upstreamExecutor;
         this.cacheServiceObj = cacheService; // Inicializamos el servicio de cache
+        this.timelineParser = timelineParser;
+        this.locationResolver = locationResolver;
+        this.accessTracker = accessTracker;
+        this.admissionController = admissionController;
     }
 
 
-    private void createResponseString(String city, String country) {
+    // Pide el timeline a la API externa y lo parsea en streaming directamente desde la respuesta
+    private LocationTimelineDTO requestTimeline(String city, String country, UpstreamPriority priority) {
+        return requestTimeline(city, country, null, null, UpstreamProjection.TIMELINE, priority);
+    }
+
+    // Con from/to se pide solo ese rango de fechas (/timeline/{ubicación}/{inicio}/{fin}) y con la proyección
+    // solo los campos que se van a usar. Cada petición pasa antes por el control de admisión con su prioridad
+    private LocationTimelineDTO requestTimeline(String city, String country, LocalDate from, LocalDate to,
+                                                UpstreamProjection projection, UpstreamPriority priority) {
         // Validación de parámetros de entrada
         if (city == null || city.trim().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La ciudad no puede ser nula o vacía");
@@ -49,74 +142,126 @@ public class WeatherService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El país no puede ser nulo o vacío");
         }
 
-        String ubi = city + "," + country; //Esto va a ser nuestra Key para la cache
-        String url = UriComponentsBuilder
+        String ubi = city + "," + country;
+        UriComponentsBuilder builder = UriComponentsBuilder
                 .fromUriString(baseUrl)
-                .pathSegment(ubi)
+                .pathSegment(ubi);
+        if (from != null && to != null) {
+            builder.pathSegment(from.toString(), to.toString());
+        }
+        if (projectionEnabled) {
+            builder.queryParam("include", projection.includeParam())
+                    .queryParam("elements", projection.elementsParam());
+        }
+        URI uri = builder
                 .queryParam("unitGroup", "metric")
                 .queryParam("key", apiKey)
                 .queryParam("contentType", "json")
                 .encode()
-                .toUriString();
+                .build()
+                .toUri();
 
-        logger.debug("URL construida: {}", url);
+        long estimatedCost = from != null && to != null ? to.toEpochDay() - from.toEpochDay() + 1 : timelineCost;
+        admissionController.acquire(priority, estimatedCost);
+        logger.debug("Consultando la API de clima para: {}", ubi);
 
-        this.responseString = restTemplate.getForObject(url, String.class);
-    }
-
-    public TodayWeatherDTO getWeather(String city, String country) {
+        LocationTimelineDTO timeline;
         try {
-            // Creamos la URL y obtenemos la respuesta de la API externa
-            createResponseString(city, country);
-
-            // Validamos que la respuesta no sea nula o vacía
-            if (responseString == null || responseString.trim().isEmpty()) {
-                throw new ResponseStatusException(HttpStatus.NO_CONTENT, "La API no devolvió ningún dato");
-            }
+            timeline = restTemplate.execute(uri, HttpMethod.GET, null, response -> {
+                try {
+                    return timelineParser.parse(response.getBody());
+                } catch (JsonProcessingException e) {
+                    // Errores de procesamiento JSON
+                    throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al procesar los datos del clima", e);
+                }
+            });
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            // El interceptor ya pausó el control de admisión con el Retry-After de la API
+            throw new UpstreamSaturatedException(admissionController.retryAfterSeconds(), e);
+        }
+        if (timeline != null && timeline.getQueryCost() > 0) {
+            admissionController.adjustCost(timeline.getQueryCost() - estimatedCost);
+        }
+        return timeline;
+    }
 
-            //Verificamos si la información ya está en cache, si no, se guarda la respuesta obtenida de la API externa
+    // Las llaves salen del id de la ubicación (canónico o, mientras no se conozca, el alias normalizado;
+    // ver LocationResolver), así que las variantes de una misma ciudad comparten caché
+    static String timelineKey(String locationId) {
+        return LocalCacheConfig.TIMELINE_PREFIX + locationId;
+    }
 
-            String keyCache = "weather:today:" + city.toLowerCase() + ":" + country.toLowerCase();
+    // Hash con un campo por día (epoch-day) para poder leer solo un rango con HMGET
+    private static String daysKey(String locationId) {
+        return DAYS_PREFIX + locationId;
+    }
 
-            Optional<TodayWeatherDTO> cacheado =
-                    cacheServiceObj.get(keyCache, TodayWeatherDTO.class);
-            if (cacheado.isPresent()) return cacheado.get();
+    // Metadatos (huella del contenido, hora de la consulta) del timeline de la ubicación, como texto plano
+    private static String metaKey(String locationId) {
+        return META_PREFIX + locationId;
+    }
 
-            // Procesamos la respuesta JSON
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode root = objectMapper.readTree(responseString);
+    // Solo el nodo que obtiene el lease va a la API externa; el resto sondea Redis hasta que aparezca el valor.
+    // Si el lease queda libre sin que nadie llene el caché (el dueño falló o caducó), este nodo lo toma y hace la
+    // petición. El fetcher recibe el lease para escribir con su token (ver CacheService.saveFenced)
+    private <T> T fetchWithLease(String keyCache, Supplier<Optional<T>> cacheLookup, Function<FetchLease, T> fetcher) {
+        Optional<FetchLease> lease = cacheServiceObj.tryAcquireLease(keyCache, leaseMillis);
+        if (lease.isPresent()) {
+            return fetchHoldingLease(lease.get(), fetcher);
+        }
 
-            // Validamos que el JSON contenga los datos esperados
-            if (root == null || root.isMissingNode()) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Respuesta JSON inválida");
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+        long pause = Math.max(1, leasePollMillis);
+        while (System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            Optional<T> filled = cacheLookup.get();
+            if (filled.isPresent()) {
+                return filled.get();
             }
+            lease = cacheServiceObj.tryAcquireLease(keyCache, leaseMillis);
+            if (lease.isPresent()) {
+                logger.debug("El lease de '{}' quedó libre sin valor en caché, se consulta la API externa", keyCache);
+                return fetchHoldingLease(lease.get(), fetcher);
+            }
+            pause = Math.min(pause * 2, MAX_LEASE_POLL_MILLIS);
+        }
 
-            TodayWeatherDTO responseDTO = new TodayWeatherDTO();
+        // Otro nodo sigue renovando el lease sin llenar el caché: sin token, su escritura no pisa la de nadie
+        logger.debug("Se agotó la espera del lease de '{}', se consulta la API externa", keyCache);
+        return fetcher.apply(new FetchLease(keyCache, FetchLease.UNFENCED));
+    }
 
-            // Extraemos la información del clima con validación
-            responseDTO.setCity(root.path("resolvedAddress").asText("Desconocido"));
-            responseDTO.setCountry(country);
-            responseDTO.setDescription(root.path("description").asText("Sin descripción"));
+    private <T> T fetchHoldingLease(FetchLease lease, Function<FetchLease, T> fetcher) {
+        try {
+            return fetcher.apply(lease);
+        } finally {
+            cacheServiceObj.releaseLease(lease);
+        }
+    }
 
-            // Información del día de hoy
-            JsonNode today = root.path("days").get(0);
+    public TodayWeatherDTO getWeather(String city, String country) {
+        return getWeatherResponse(city, country).body();
+    }
 
-            if (today == null || today.isMissingNode()) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se encontró información del clima para hoy");
+    // Cuerpo y validadores de la misma versión del timeline (ver VersionedResponse)
+    public VersionedResponse<TodayWeatherDTO> getWeatherResponse(String city, String country) {
+        try {
+            // Validación de parámetros de entrada
+            if (city == null || city.trim().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La ciudad no puede ser nula o vacía");
+            }
+            if (country == null || country.trim().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El país no puede ser nulo o vacío");
             }
 
-            responseDTO.setTemp(today.path("temp").asDouble(0.0));
-            responseDTO.setTempMax(today.path("tempmax").asDouble(0.0));
-            responseDTO.setTempMin(today.path("tempmin").asDouble(0.0));
-            responseDTO.setHumidity(today.path("humidity").asDouble(0.0));
-            responseDTO.setConditions(today.path("conditions").asText("Desconocido"));
-            responseDTO.setIcon(today.path("icon").asText(""));
-            responseDTO.setSunrise(today.path("sunrise").asText(""));
-            responseDTO.setSunset(today.path("sunset").asText(""));
-
-            cacheServiceObj.save(keyCache, responseDTO, 3600); //guardamos en cache por 1 hora (3600 segundos)
-            logger.debug("Se guarda en cache: {}", responseDTO);
-            return responseDTO;
+            // Proyectamos el día de hoy desde el timeline canónico de la ubicación
+            LocationTimelineDTO timeline = getTimeline(locationResolver.resolve(city, country));
+            return versioned(timeline, toTodayWeather(timeline, country), todayVariant(country), null, null);
 
         } catch (ResponseStatusException e) {
             // Re-lanzamos las excepciones de tipo ResponseStatusException
@@ -133,9 +278,6 @@ public class WeatherService {
         } catch (HttpServerErrorException e) {
             // Errores 5xx de la API externa
             throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio de clima está temporalmente no disponible", e);
-        } catch (JsonProcessingException e) {
-            // Errores de procesamiento JSON
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al procesar los datos del clima", e);
         } catch (Exception e) {
             // Cualquier otro error
             logger.error("Error inesperado en WeatherService: {}", e.getMessage(), e);
@@ -145,6 +287,16 @@ public class WeatherService {
     }
 
     public List<MonthWeatherDTO> getWeatherMonth(String city, String country) {
+        return getWeatherMonth(city, country, null, null);
+    }
+
+    // Con from y/o to solo se devuelven (y se leen del caché) los días del rango; si falta uno de los dos
+    // el rango es de un solo día
+    public List<MonthWeatherDTO> getWeatherMonth(String city, String country, LocalDate from, LocalDate to) {
+        return getWeatherMonthResponse(city, country, from, to).body();
+    }
+
+    public VersionedResponse<List<MonthWeatherDTO>> getWeatherMonthResponse(String city, String country, LocalDate from, LocalDate to) {
         try {
             // Validación de parámetros de entrada
             if (city == null || city.trim().isEmpty()) {
@@ -154,47 +306,232 @@ public class WeatherService {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El país no puede ser nulo o vacío");
             }
 
-            String keyCache = "weather:month:" + city.toLowerCase() + ":" + country.toLowerCase();
-            Optional<List<MonthWeatherDTO>> cacheado =
-                    cacheServiceObj.getList(keyCache, MonthWeatherDTO.class);
-            if (cacheado.isPresent()) return cacheado.get();
-
+            if (from == null && to == null) {
+                // Proyectamos los días desde el mismo timeline que usa el endpoint de hoy
+                LocationTimelineDTO timeline = getTimeline(locationResolver.resolve(city, country));
+                return versioned(timeline, toMonthWeather(timeline), daysVariant(from, to), null, null);
+            }
 
-            // Creamos la URL y obtenemos la respuesta de la API externa
-            createResponseString(city, country);
+            DateRange range = dateRange(from, to);
+            return getDayRange(locationResolver.resolve(city, country), range.from(), range.to(), daysVariant(from, to))
+                    .map(WeatherService::toMonthWeather);
 
-            // Validamos que la respuesta no sea nula o vacía
-            if (responseString == null || responseString.trim().isEmpty()) {
-                throw new ResponseStatusException(HttpStatus.NO_CONTENT, "La API no devolvió ningún dato");
+        } catch (ResponseStatusException e) {
+            // Re-lanzamos las excepciones de tipo ResponseStatusException
+            throw e;
+        } catch (HttpClientErrorException e) {
+            // Errores 4xx de la API externa
+            if (e.getStatusCode().value() == 404) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ciudad o ubicación no encontrada", e);
+            } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Error de autenticación con la API de clima", e);
+            } else {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error en la solicitud: " + e.getMessage(), e);
             }
+        } catch (HttpServerErrorException e) {
+            // Errores 5xx de la API externa
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio de clima está temporalmente no disponible", e);
+        } catch (Exception e) {
+            // Cualquier otro error
+            logger.error("Error inesperado en WeatherService.getWeatherPerDay: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener el clima por días: " + e.getMessage(), e);
+        }
+    }
+
+    // Rango de /days?from&to; si falta uno de los dos extremos el rango es de un solo día
+    private record DateRange(LocalDate from, LocalDate to) {
+    }
+
+    private DateRange dateRange(LocalDate from, LocalDate to) {
+        LocalDate start = from != null ? from : to;
+        LocalDate end = to != null ? to : from;
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha inicial no puede ser posterior a la final");
+        }
+        if (end.toEpochDay() - start.toEpochDay() + 1 > maxRangeDays) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El rango no puede superar " + maxRangeDays + " días");
+        }
+        return new DateRange(start, end);
+    }
+
+    // Días de [from, to] sin leer ni decodificar el timeline completo; la ventana que falte se pide a la API externa
+    // una sola vez aunque la pidan varias peticiones a la vez. Con días recién pedidos no hay validadores:
+    // no son de la versión del timeline que describe la meta
+    private VersionedResponse<List<TimelineDayDTO>> getDayRange(ResolvedLocation location, LocalDate from, LocalDate to,
+                                                                String variant) {
+        DayRangeLookup lookup = lookupDayRange(location, from, to);
+        if (lookup.isComplete()) {
+            return new VersionedResponse<>(lookup.merge(Map.of()), rangeValidators(location, lookup, variant, from, to));
+        }
+        return new VersionedResponse<>(lookup.merge(singleFlight.execute(lookup.flightKey(),
+                () -> fetchDayWindow(location, lookup.missingFrom(), lookup.missingTo()))), Optional.empty());
+    }
+
+    // Versión del modo async: la ventana que falta se pide en upstreamExecutor y las peticiones del mismo rango
+    // comparten el future
+    private CompletableFuture<VersionedResponse<List<TimelineDayDTO>>> getDayRangeAsync(ResolvedLocation location,
+                                                                                        LocalDate from, LocalDate to,
+                                                                                        String variant) {
+        DayRangeLookup lookup = lookupDayRange(location, from, to);
+        if (lookup.isComplete()) {
+            return CompletableFuture.completedFuture(
+                    new VersionedResponse<>(lookup.merge(Map.of()), rangeValidators(location, lookup, variant, from, to)));
+        }
+        return asyncFlight.executeAsync(lookup.flightKey(),
+                        () -> withUpstreamErrors(() -> fetchDayWindow(location, lookup.missingFrom(), lookup.missingTo())),
+                        this::executeUpstream)
+                .thenApply(fetched -> new VersionedResponse<>(lookup.merge(fetched), Optional.empty()));
+    }
 
-            // Procesamos la respuesta JSON
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
-            JsonNode root = objectMapper.readTree(responseString);
+    // Un rango leído del caché lleva validadores solo si todos sus días son de la versión que describe la meta actual
+    private Optional<ResponseValidators> rangeValidators(ResolvedLocation location, DayRangeLookup lookup, String variant,
+                                                         LocalDate from, LocalDate to) {
+        if (lookup.fetchedAt() < 0) {
+            return Optional.empty();
+        }
+        return currentMeta(location)
+                .filter(meta -> meta.getFetchedAt() == lookup.fetchedAt())
+                .flatMap(meta -> validatorsOf(meta, variant, from, to));
+    }
+
+    // Lo que ya hay en caché de [from, to]:
+    // 1. si el timeline está en el L1 y cubre el rango, se recorta en memoria
+    // 2. si no, HMGET de solo esos días en el hash weather:days:
+    // 3. los que falten quedan como una única ventana [primer faltante, último faltante]
+    private DayRangeLookup lookupDayRange(ResolvedLocation location, LocalDate from, LocalDate to) {
+        String keyCache = timelineKey(location.id());
+        accessTracker.record(keyCache, location.city(), location.country());
+        String keyDays = daysKey(location.id());
+        List<String> fields = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            fields.add(Long.toString(date.toEpochDay()));
+        }
 
-            // Validamos que el JSON contenga los datos esperados
-            if (root == null || root.isMissingNode()) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Respuesta JSON inválida");
+        Optional<LocationTimelineDTO> local = cacheServiceObj.getLocal(keyCache, LocationTimelineDTO.class)
+                .filter(timeline -> !isExpired(timeline));
+        if (local.isPresent()) {
+            DaySeries series = daySeries(local.get());
+            if (series.size() > 0 && !series.dateAt(0).isAfter(from) && !series.dateAt(series.size() - 1).isBefore(to)) {
+                Map<String, TimelineDayDTO> days = new HashMap<>();
+                for (TimelineDayDTO day : local.get().getDays()) {
+                    if (day.getDatetime() != null && !day.getDatetime().isBefore(from) && !day.getDatetime().isAfter(to)) {
+                        days.put(Long.toString(day.getDatetime().toEpochDay()), day);
+                    }
+                }
+                return new DayRangeLookup(keyDays, fields, days, null, null, local.get().getFetchedAt());
             }
+        }
 
-            JsonNode daysNode = root.path("days");
+        // Cada día lleva su propio fetchedAt: los que superan el TTL duro cuentan como faltantes y se vuelven a pedir
+        Map<String, TimelineDayDTO> cached = new HashMap<>();
+        Set<Long> versions = new HashSet<>();
+        cacheServiceObj.getHashFields(keyDays, fields, CachedDayDTO.class).forEach((field, entry) -> {
+            if (entry.getDay() != null && !isExpired(entry.getFetchedAt())) {
+                cached.put(field, entry.getDay());
+                versions.add(entry.getFetchedAt());
+            }
+        });
 
-            if (daysNode == null || !daysNode.isArray()) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se encontró información diaria del clima");
+        LocalDate missingFrom = null;
+        LocalDate missingTo = null;
+        for (String field : fields) {
+            if (!cached.containsKey(field)) {
+                LocalDate date = LocalDate.ofEpochDay(Long.parseLong(field));
+                missingFrom = missingFrom == null ? date : missingFrom;
+                missingTo = date;
             }
+        }
+        long fetchedAt = missingFrom == null && versions.size() == 1 ? versions.iterator().next() : -1;
+        return new DayRangeLookup(keyDays, fields, cached, missingFrom, missingTo, fetchedAt);
+    }
 
-            if (daysNode.isEmpty()) {
+    // Días de un rango encontrados en caché (por epochDay), la ventana que falta, si falta alguno, y el fetchedAt
+    // común a todos los días (-1 si falta alguno o vienen de consultas distintas)
+    private record DayRangeLookup(String keyDays, List<String> fields, Map<String, TimelineDayDTO> days,
+                                  LocalDate missingFrom, LocalDate missingTo, long fetchedAt) {
+
+        boolean isComplete() {
+            return missingFrom == null;
+        }
+
+        String flightKey() {
+            return keyDays + ":" + missingFrom + ":" + missingTo;
+        }
+
+        // Los días recién pedidos mandan sobre los cacheados que caigan dentro de la ventana
+        List<TimelineDayDTO> merge(Map<String, TimelineDayDTO> fetched) {
+            List<TimelineDayDTO> result = new ArrayList<>(fields.size());
+            for (String field : fields) {
+                TimelineDayDTO day = fetched.getOrDefault(field, days.get(field));
+                if (day != null) {
+                    result.add(day);
+                }
+            }
+            if (result.isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.NO_CONTENT, "No hay datos de días disponibles");
             }
+            return result;
+        }
+    }
 
-            // Convertimos el JsonNode de días a una lista de MonthWeatherDTO
-            List<MonthWeatherDTO> days = objectMapper.convertValue(daysNode, new TypeReference<>() {
-            });
+    // Pide a la API externa solo la ventana que falta y la deja en el hash de días de la ubicación canónica
+    private Map<String, TimelineDayDTO> fetchDayWindow(ResolvedLocation location, LocalDate from, LocalDate to) {
+        LocationTimelineDTO window = requestTimeline(location.city(), location.country(), from, to,
+                UpstreamProjection.DAY_WINDOW, UpstreamPriority.USER);
+        if (window == null || window.getDays() == null) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se encontró información diaria del clima");
+        }
+        String keyDays = daysKey(locationResolver.learn(location, window));
+        Map<String, TimelineDayDTO> byDay = byEpochDay(window.getDays());
+        saveDays(keyDays, byDay, System.currentTimeMillis());
+        logger.debug("Ventana {}..{} guardada en cache: {} ({} días)", from, to, keyDays, byDay.size());
+        return byDay;
+    }
+
+    // Guarda los días con el momento en que se pidieron y aprovecha la escritura para quitar del hash
+    // los días anteriores a ayer (margen para las zonas horarias por detrás de UTC)
+    private void saveDays(String keyDays, Map<String, TimelineDayDTO> byDay, long fetchedAt) {
+        Map<String, CachedDayDTO> entries = new HashMap<>(byDay.size() * 2);
+        byDay.forEach((field, day) -> entries.put(field, new CachedDayDTO(day, fetchedAt)));
+        long firstKept = LocalDate.now(ZoneOffset.UTC).minusDays(1).toEpochDay();
+        cacheServiceObj.saveHashFields(keyDays, entries, hardTtlSeconds, field -> {
+            try {
+                return Long.parseLong(field) >= firstKept;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        });
+    }
+
+    private static Map<String, TimelineDayDTO> byEpochDay(List<TimelineDayDTO> days) {
+        Map<String, TimelineDayDTO> byDay = new HashMap<>(days.size() * 2);
+        for (TimelineDayDTO day : days) {
+            if (day.getDatetime() != null) {
+                byDay.put(Long.toString(day.getDatetime().toEpochDay()), day);
+            }
+        }
+        return byDay;
+    }
 
-            cacheServiceObj.save(keyCache, days, 3600); //guardamos en cache por 1 hora (3600 segundos)
-            logger.debug("Días obtenidos: {}", days);
-            return days;
+    // Estadísticas de los días en [from, to] calculadas sobre la vista columnar del timeline.
+    // fields admite temp, tempmax, tempmin, humidity, windspeed, conditions e icon; sin fields se devuelven todos
+    public DayStatsDTO getDayStats(String city, String country, LocalDate from, LocalDate to, List<String> fields) {
+        return getDayStatsResponse(city, country, from, to, fields).body();
+    }
+
+    public VersionedResponse<DayStatsDTO> getDayStatsResponse(String city, String country, LocalDate from, LocalDate to,
+                                                              List<String> fields) {
+        try {
+            // Validación de parámetros de entrada
+            if (city == null || city.trim().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La ciudad no puede ser nula o vacía");
+            }
+            if (country == null || country.trim().isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El país no puede ser nulo o vacío");
+            }
+            Function<LocationTimelineDTO, DayStatsDTO> stats = dayStats(city, country, from, to, fields);
+            LocationTimelineDTO timeline = getTimeline(locationResolver.resolve(city, country));
+            return versioned(timeline, stats.apply(timeline), statsVariant(city, country, from, to, fields), from, to);
 
         } catch (ResponseStatusException e) {
             // Re-lanzamos las excepciones de tipo ResponseStatusException
@@ -211,14 +548,567 @@ public class WeatherService {
         } catch (HttpServerErrorException e) {
             // Errores 5xx de la API externa
             throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio de clima está temporalmente no disponible", e);
-        } catch (JsonProcessingException e) {
-            // Errores de procesamiento JSON
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al procesar los datos del clima", e);
         } catch (Exception e) {
             // Cualquier otro error
-            logger.error("Error inesperado en WeatherService.getWeatherPerDay: {}", e.getMessage(), e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener el clima por días: " + e.getMessage(), e);
+            logger.error("Error inesperado en WeatherService.getDayStats: {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener las estadísticas: " + e.getMessage(), e);
+        }
+    }
+
+    // Valida from, to y fields y devuelve el cálculo sobre el timeline, para aplicarlo al que se cargue
+    // (en el hilo de la petición o al completarse la carga del modo async)
+    private static Function<LocationTimelineDTO, DayStatsDTO> dayStats(String city, String country, LocalDate from, LocalDate to,
+                                                                       List<String> fields) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha inicial no puede ser posterior a la final");
+        }
+
+        boolean all = fields == null || fields.isEmpty();
+        EnumSet<DaySeries.Field> numeric = all ? EnumSet.allOf(DaySeries.Field.class) : EnumSet.noneOf(DaySeries.Field.class);
+        boolean conditions = all || fields.stream().anyMatch(field -> field.trim().equalsIgnoreCase("conditions"));
+        boolean icons = all || fields.stream().anyMatch(field -> field.trim().equalsIgnoreCase("icon"));
+        if (!all) {
+            for (String field : fields) {
+                String name = field.trim().toLowerCase(Locale.ROOT);
+                if (!name.equals("conditions") && !name.equals("icon")) {
+                    numeric.add(parseField(field));
+                }
+            }
+        }
+        return timeline -> {
+            DaySeries series = daySeries(timeline);
+            int fromIndex = series.lowerBound(from);
+            int toIndex = Math.max(fromIndex, series.upperBound(to));
+
+            DayStatsDTO stats = new DayStatsDTO();
+            stats.setCity(city);
+            stats.setCountry(country);
+            stats.setDays(toIndex - fromIndex);
+            if (toIndex > fromIndex) {
+                stats.setFrom(series.dateAt(fromIndex));
+                stats.setTo(series.dateAt(toIndex - 1));
+            }
+            if (!numeric.isEmpty()) {
+                Map<String, FieldStatsDTO> byField = new LinkedHashMap<>();
+                for (DaySeries.Field field : numeric) {
+                    byField.put(field.paramName(), series.stats(field, fromIndex, toIndex));
+                }
+                stats.setFields(byField);
+            }
+            if (conditions) {
+                stats.setConditions(series.conditionCounts(fromIndex, toIndex));
+            }
+            if (icons) {
+                stats.setIcons(series.iconCounts(fromIndex, toIndex));
+            }
+            return stats;
+        };
+    }
+
+    private static DaySeries.Field parseField(String field) {
+        try {
+            return DaySeries.Field.fromParam(field);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Campo no soportado: " + field.trim());
+        }
+    }
+
+    // La vista columnar se construye una vez por instancia de timeline; mientras siga en el L1 se reutiliza.
+    // Si dos hilos la construyen a la vez ambas son equivalentes y gana la última
+    private static DaySeries daySeries(LocationTimelineDTO timeline) {
+        DaySeries series = timeline.getDaySeries();
+        if (series == null) {
+            series = DaySeries.from(timeline);
+            timeline.setDaySeries(series);
+        }
+        return series;
+    }
+
+    // Clima de hoy para varias ubicaciones: los aciertos se resuelven con un solo MGET
+    // y los fallos van en paralelo a la API externa en un pool acotado
+    public List<BatchWeatherItemDTO> getWeatherBatch(List<LocationRequestDTO> locations) {
+        if (locations == null || locations.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se requiere al menos una ubicación");
+        }
+        if (locations.size() > batchMaxSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El lote no puede superar " + batchMaxSize + " ubicaciones");
+        }
+
+        // Los alias se resuelven juntos (un MGET para los que no estén en el L1) y después los timelines
+        List<Integer> validIndexes = new ArrayList<>(locations.size());
+        List<String> cities = new ArrayList<>(locations.size());
+        List<String> countries = new ArrayList<>(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            LocationRequestDTO location = locations.get(i);
+            if (isValidLocation(location)) {
+                validIndexes.add(i);
+                cities.add(location.getCity());
+                countries.add(location.getCountry());
+            }
+        }
+        List<ResolvedLocation> resolved = locationResolver.resolveAll(cities, countries);
+        List<ResolvedLocation> resolvedByIndex = new ArrayList<>(Collections.nCopies(locations.size(), null));
+        for (int i = 0; i < validIndexes.size(); i++) {
+            resolvedByIndex.set(validIndexes.get(i), resolved.get(i));
+        }
+        Map<String, LocationTimelineDTO> cached = cacheServiceObj.multiGet(
+                resolved.stream().map(location -> timelineKey(location.id())).toList(), LocationTimelineDTO.class);
+
+        List<CompletableFuture<BatchWeatherItemDTO>> items = new ArrayList<>(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            LocationRequestDTO location = locations.get(i);
+            ResolvedLocation resolvedLocation = resolvedByIndex.get(i);
+            if (resolvedLocation == null) {
+                String city = location == null ? null : location.getCity();
+                String country = location == null ? null : location.getCountry();
+                items.add(CompletableFuture.completedFuture(BatchWeatherItemDTO.error(city, country,
+                        HttpStatus.BAD_REQUEST.value(), "Se requiere la ciudad y el país para obtener el clima")));
+                continue;
+            }
+
+            String keyCache = timelineKey(resolvedLocation.id());
+            LocationTimelineDTO timeline = cached.get(keyCache);
+            if (timeline != null && !isExpired(timeline)) {
+                accessTracker.record(keyCache, resolvedLocation.city(), resolvedLocation.country());
+                if (isStale(timeline)) {
+                    refreshInBackground(resolvedLocation, UpstreamPriority.REFRESH);
+                }
+                items.add(CompletableFuture.completedFuture(BatchWeatherItemDTO.ok(location.getCity(),
+                        location.getCountry(), toTodayWeather(timeline, location.getCountry()))));
+            } else {
+                items.add(CompletableFuture.supplyAsync(() -> resolveBatchItem(location), batchExecutor));
+            }
+        }
+
+        return items.stream().map(CompletableFuture::join).toList();
+    }
+
+    private static boolean isValidLocation(LocationRequestDTO location) {
+        return location != null
+                && location.getCity() != null && !location.getCity().trim().isEmpty()
+                && location.getCountry() != null && !location.getCountry().trim().isEmpty();
+    }
+
+    // Un fallo de una ubicación no tumba el lote: se devuelve con su propio status
+    private BatchWeatherItemDTO resolveBatchItem(LocationRequestDTO location) {
+        try {
+            return BatchWeatherItemDTO.ok(location.getCity(), location.getCountry(),
+                    getWeather(location.getCity(), location.getCountry()));
+        } catch (ResponseStatusException e) {
+            return BatchWeatherItemDTO.error(location.getCity(), location.getCountry(),
+                    e.getStatusCode().value(), e.getReason());
+        } catch (Exception e) {
+            logger.error("Error inesperado en el lote para {}, {}: {}", location.getCity(), location.getCountry(), e.getMessage());
+            return BatchWeatherItemDTO.error(location.getCity(), location.getCountry(),
+                    HttpStatus.INTERNAL_SERVER_ERROR.value(), "Error inesperado al obtener el clima");
+        }
+    }
+
+    // Validadores HTTP (ETag, Last-Modified, Cache-Control) de cada endpoint; vacío si no hay timeline vigente en caché.
+    // La variante entra en el ETag porque cambia el cuerpo (el país tal como se pidió, el rango, los campos)
+    public Optional<ResponseValidators> getWeatherValidators(String city, String country) {
+        return validators(city, country, todayVariant(country), null, null);
+    }
+
+    public Optional<ResponseValidators> getWeatherMonthValidators(String city, String country, LocalDate from, LocalDate to) {
+        return validators(city, country, daysVariant(from, to), from, to);
+    }
+
+    public Optional<ResponseValidators> getDayStatsValidators(String city, String country, LocalDate from, LocalDate to, List<String> fields) {
+        return validators(city, country, statsVariant(city, country, from, to, fields), from, to);
+    }
+
+    private static String todayVariant(String country) {
+        return "today|" + country;
+    }
+
+    private static String daysVariant(LocalDate from, LocalDate to) {
+        return "days|" + from + "|" + to;
+    }
+
+    // Las estadísticas repiten la ciudad y el país tal como se pidieron
+    private static String statsVariant(String city, String country, LocalDate from, LocalDate to, List<String> fields) {
+        return "stats|" + city + "|" + country + "|" + from + "|" + to + "|" + fields;
+    }
+
+    // Sin Jackson: la meta sale del timeline si ya está en el L1 o del texto corto de weather:meta: (L1 o Redis).
+    // Bastan para un 304 o para un cuerpo ya serializado bajo ese ETag; un cuerpo nuevo lleva los validadores
+    // del timeline del que sale (VersionedResponse), por si un refresco lo cambió entre medias.
+    // Un rango solo lleva ETag si cae dentro de los días del timeline; los de fuera vienen de otra consulta.
+    // Solo lectura: el acceso lo cuenta recordUse (304 o cuerpo ya serializado) o la lectura del timeline (cuerpo nuevo)
+    private Optional<ResponseValidators> validators(String city, String country, String variant, LocalDate from, LocalDate to) {
+        if (city == null || city.trim().isEmpty() || country == null || country.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        return currentMeta(locationResolver.resolve(city, country)).flatMap(meta -> validatorsOf(meta, variant, from, to));
+    }
+
+    private Optional<TimelineMetaDTO> currentMeta(ResolvedLocation location) {
+        return cacheServiceObj.peekLocal(timelineKey(location.id()), LocationTimelineDTO.class)
+                .filter(WeatherService::hasMeta)
+                .map(TimelineMetaDTO::of)
+                .or(() -> cacheServiceObj.getText(metaKey(location.id())).flatMap(TimelineMetaDTO::fromText));
+    }
+
+    // El cuerpo y sus validadores salen del mismo timeline
+    private <T> VersionedResponse<T> versioned(LocationTimelineDTO timeline, T body, String variant, LocalDate from, LocalDate to) {
+        Optional<ResponseValidators> validators = hasMeta(timeline)
+                ? validatorsOf(TimelineMetaDTO.of(timeline), variant, from, to) : Optional.empty();
+        return new VersionedResponse<>(body, validators);
+    }
+
+    private Optional<ResponseValidators> validatorsOf(TimelineMetaDTO meta, String variant, LocalDate from, LocalDate to) {
+        long age = System.currentTimeMillis() - meta.getFetchedAt();
+        long softMillis = TimeUnit.SECONDS.toMillis(softTtlSeconds);
+        long hardMillis = TimeUnit.SECONDS.toMillis(hardTtlSeconds);
+        if (age >= hardMillis) {
+            return Optional.empty();
+        }
+        if (from != null || to != null) {
+            LocalDate start = from != null ? from : to;
+            LocalDate end = to != null ? to : from;
+            if (start.isBefore(meta.getFirstDay()) || end.isAfter(meta.getLastDay())) {
+                return Optional.empty();
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(variant.getBytes(StandardCharsets.UTF_8));
+        String etag = "\"" + meta.getContentHash() + String.format("%08x", crc.getValue()) + "\"";
+        return Optional.of(new ResponseValidators(etag, meta.getFetchedAt(),
+                Math.max(0, softMillis - age) / 1000, (hardMillis - Math.max(age, softMillis)) / 1000));
+    }
+
+    // Un 304 o un cuerpo ya serializado no leen el timeline pero también cuentan como uso: se registra el acceso
+    // y, si la versión validada ya pasó el TTL blando, se refresca en segundo plano
+    public void recordUse(String city, String country, ResponseValidators validators) {
+        ResolvedLocation location = locationResolver.resolve(city, country);
+        accessTracker.record(timelineKey(location.id()), location.city(), location.country());
+        if (System.currentTimeMillis() - validators.lastModified() >= TimeUnit.SECONDS.toMillis(softTtlSeconds)) {
+            refreshInBackground(location, UpstreamPriority.REFRESH);
+        }
+    }
+
+    // Modo async (weather.execution.mode=async): las mismas respuestas que getWeather, getWeatherMonth y getDayStats
+    // pero sin ocupar el hilo de la petición mientras se espera a la API externa
+    public CompletableFuture<VersionedResponse<TodayWeatherDTO>> getWeatherAsync(String city, String country) {
+        return async(city, country, timeline ->
+                versioned(timeline, toTodayWeather(timeline, country), todayVariant(country), null, null));
+    }
+
+    public CompletableFuture<VersionedResponse<List<MonthWeatherDTO>>> getWeatherMonthAsync(String city, String country,
+                                                                                           LocalDate from, LocalDate to) {
+        if (from == null && to == null) {
+            return async(city, country, timeline ->
+                    versioned(timeline, toMonthWeather(timeline), daysVariant(from, to), null, null));
+        }
+        try {
+            requireLocation(city, country);
+            DateRange range = dateRange(from, to);
+            return getDayRangeAsync(locationResolver.resolve(city, country), range.from(), range.to(), daysVariant(from, to))
+                    .thenApply(days -> days.map(WeatherService::toMonthWeather));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public CompletableFuture<VersionedResponse<DayStatsDTO>> getDayStatsAsync(String city, String country, LocalDate from,
+                                                                              LocalDate to, List<String> fields) {
+        Function<LocationTimelineDTO, DayStatsDTO> stats;
+        try {
+            requireLocation(city, country);
+            stats = dayStats(city, country, from, to, fields);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String variant = statsVariant(city, country, from, to, fields);
+        return async(city, country, timeline -> versioned(timeline, stats.apply(timeline), variant, from, to));
+    }
+
+    // Con el timeline vigente en caché (L1 o Redis) se responde en el hilo de la petición.
+    // Si hay que ir a la API externa, la carga corre en upstreamExecutor y todas las peticiones de la ubicación
+    // comparten un único future; al completarse, cada una proyecta su respuesta desde ese mismo timeline
+    // (solo CPU: ni otra lectura del caché ni otra petición a la API)
+    private <T> CompletableFuture<T> async(String city, String country, Function<LocationTimelineDTO, T> projection) {
+        ResolvedLocation location;
+        try {
+            requireLocation(city, country);
+            location = locationResolver.resolve(city, country);
+            Optional<LocationTimelineDTO> cacheado = freshTimeline(location);
+            if (cacheado.isPresent()) {
+                return CompletableFuture.completedFuture(projection.apply(cacheado.get()));
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String keyCache = timelineKey(location.id());
+        return asyncFlight.executeAsync(keyCache, () -> withUpstreamErrors(() -> awaitTimeline(location)), this::executeUpstream)
+                .thenApply(timeline -> {
+                    accessTracker.record(keyCache, location.city(), location.country());
+                    return projection.apply(timeline);
+                });
+    }
+
+    // Mismas validaciones y mensajes que la versión bloqueante
+    private static void requireLocation(String city, String country) {
+        if (city == null || city.trim().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La ciudad no puede ser nula o vacía");
+        }
+        if (country == null || country.trim().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El país no puede ser nulo o vacío");
+        }
+    }
+
+    private void executeUpstream(Runnable task) {
+        try {
+            upstreamExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Demasiadas peticiones esperando al servicio de clima, inténtalo más tarde", e);
+        }
+    }
+
+    // Cargas del modo async, con la misma traducción de errores de la API externa que getWeather
+    private static <T> T withUpstreamErrors(Supplier<T> load) {
+        try {
+            return load.get();
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (HttpClientErrorException e) {
+            // Errores 4xx de la API externa
+            if (e.getStatusCode().value() == 404) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ciudad o ubicación no encontrada", e);
+            } else if (e.getStatusCode().value() == 401 || e.getStatusCode().value() == 403) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Error de autenticación con la API de clima", e);
+            } else {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Error en la solicitud: " + e.getMessage(), e);
+            }
+        } catch (HttpServerErrorException e) {
+            // Errores 5xx de la API externa
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "El servicio de clima está temporalmente no disponible", e);
+        } catch (Exception e) {
+            // Cualquier otro error
+            logger.error("Error inesperado en WeatherService (async): {}", e.getMessage(), e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error inesperado al obtener el clima: " + e.getMessage(), e);
+        }
+    }
+
+    // Timeline canónico de la ubicación con stale-while-revalidate:
+    // - antes del TTL blando se sirve del caché
+    // - entre el TTL blando y el duro se sirve lo cacheado y se refresca en segundo plano
+    // - pasado el TTL duro (o sin caché) la petición espera a la API externa
+    private LocationTimelineDTO getTimeline(ResolvedLocation location) {
+        Optional<LocationTimelineDTO> cacheado = freshTimeline(location);
+        if (cacheado.isPresent()) {
+            return cacheado.get();
+        }
+        LocationTimelineDTO timeline = awaitTimeline(location);
+        // Solo cuentan las ubicaciones que existen: una ciudad inválida nunca entra en el refresco proactivo
+        accessTracker.record(timelineKey(location.id()), location.city(), location.country());
+        return timeline;
+    }
+
+    // Acierto antes del TTL duro: cuenta el acceso y, pasado el TTL blando, encola el refresco
+    private Optional<LocationTimelineDTO> freshTimeline(ResolvedLocation location) {
+        String keyCache = timelineKey(location.id());
+        Optional<LocationTimelineDTO> cacheado = cacheServiceObj.get(keyCache, LocationTimelineDTO.class)
+                .filter(timeline -> !isExpired(timeline));
+        if (cacheado.isPresent()) {
+            accessTracker.record(keyCache, location.city(), location.country());
+            if (isStale(cacheado.get())) {
+                refreshInBackground(location, UpstreamPriority.REFRESH);
+            }
+        }
+        return cacheado;
+    }
+
+    // Fallo o timeline pasado el TTL duro: la petición espera a la API externa.
+    // Si varias peticiones fallan el caché a la vez, solo una va a la API externa y el resto comparte su resultado
+    private LocationTimelineDTO awaitTimeline(ResolvedLocation location) {
+        String keyCache = timelineKey(location.id());
+        try {
+            return singleFlight.execute(keyCache, () -> fetchWithLease(keyCache,
+                    () -> cachedTimeline(location).filter(cached -> !isExpired(cached)),
+                    lease -> loadTimeline(location, lease)));
+        } catch (UpstreamSaturatedException e) {
+            // Mejor un dato viejo que un 503 mientras la API está saturada
+            Optional<LocationTimelineDTO> expired = serveStaleOnSaturation
+                    ? cacheServiceObj.get(keyCache, LocationTimelineDTO.class) : Optional.empty();
+            if (expired.isEmpty()) {
+                throw e;
+            }
+            logger.warn("API de clima saturada, se sirve '{}' pasado el TTL duro", keyCache);
+            return expired.get();
+        }
+    }
+
+    // Con un alias todavía sin id canónico, quien hace la petición a la API (este u otro nodo) guarda el timeline
+    // bajo el id canónico: se vuelve a resolver el alias para leer esa llave
+    private Optional<LocationTimelineDTO> cachedTimeline(ResolvedLocation location) {
+        String locationId = location.isProvisional()
+                ? locationResolver.resolve(location.city(), location.country()).id() : location.id();
+        return cacheServiceObj.get(timelineKey(locationId), LocationTimelineDTO.class);
+    }
+
+    // Usado por HotLocationRefresher: encola un refresco si el timeline ya pasó el TTL blando o ya no está en caché.
+    // Devuelve true si se encoló
+    boolean refreshIfStale(String city, String country) {
+        ResolvedLocation location = locationResolver.resolve(city, country);
+        Optional<LocationTimelineDTO> cacheado = cacheServiceObj.get(timelineKey(location.id()), LocationTimelineDTO.class);
+        if (cacheado.isPresent() && !isStale(cacheado.get())) {
+            return false;
+        }
+        return refreshInBackground(location, UpstreamPriority.WARMUP);
+    }
+
+    private boolean isStale(LocationTimelineDTO timeline) {
+        return System.currentTimeMillis() - timeline.getFetchedAt() >= TimeUnit.SECONDS.toMillis(softTtlSeconds);
+    }
+
+    private boolean isExpired(LocationTimelineDTO timeline) {
+        return isExpired(timeline.getFetchedAt());
+    }
+
+    private boolean isExpired(long fetchedAt) {
+        return System.currentTimeMillis() - fetchedAt >= TimeUnit.SECONDS.toMillis(hardTtlSeconds);
+    }
+
+    // Refresco asíncrono de un timeline obsoleto; como mucho uno por llave en este nodo
+    // y, gracias al lease, uno por llave en todo el clúster
+    private boolean refreshInBackground(ResolvedLocation location, UpstreamPriority priority) {
+        String keyCache = timelineKey(location.id());
+        if (!refreshing.add(keyCache)) {
+            return false;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshTimeline(location, keyCache, priority);
+                } catch (Exception e) {
+                    // Seguimos sirviendo lo cacheado hasta el TTL duro
+                    logger.warn("No se pudo refrescar '{}' en segundo plano: {}", keyCache, e.getMessage());
+                } finally {
+                    refreshing.remove(keyCache);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(keyCache);
+            logger.debug("Cola de refresco llena, se omite el refresco de '{}'", keyCache);
+            return false;
+        }
+    }
+
+    // Mismo orden que awaitTimeline: primero el single-flight y dentro el lease. Al revés, una petición que falla
+    // el caché entre medias quedaría esperando un lease que el refresco no suelta hasta que ella termine
+    private void refreshTimeline(ResolvedLocation location, String keyCache, UpstreamPriority priority) {
+        singleFlight.execute(keyCache, () -> fetchWithLease(keyCache,
+                () -> cacheServiceObj.getFromStore(keyCache, LocationTimelineDTO.class).filter(stored -> !isStale(stored)),
+                lease -> {
+                    // Otro nodo pudo haberlo refrescado justo antes: lo leemos de Redis saltando el L1
+                    Optional<LocationTimelineDTO> stored = cacheServiceObj.getFromStore(keyCache, LocationTimelineDTO.class);
+                    if (stored.isPresent() && !isStale(stored.get())) {
+                        return stored.get();
+                    }
+                    return fetchTimeline(location, priority, lease);
+                }));
+    }
+
+    private LocationTimelineDTO loadTimeline(ResolvedLocation location, FetchLease lease) {
+        // Otro hilo pudo haber llenado el caché mientras esperábamos
+        Optional<LocationTimelineDTO> cacheado = cachedTimeline(location)
+                .filter(timeline -> !isExpired(timeline));
+        if (cacheado.isPresent()) return cacheado.get();
+
+        return fetchTimeline(location, UpstreamPriority.USER, lease);
+    }
+
+    private LocationTimelineDTO fetchTimeline(ResolvedLocation location, UpstreamPriority priority, FetchLease lease) {
+        // Creamos la URL, obtenemos la respuesta de la API externa y la parseamos en streaming
+        LocationTimelineDTO timeline = requestTimeline(location.city(), location.country(), priority);
+
+        // Validamos que el JSON contenga los datos esperados
+        if (timeline == null) {
+            throw new ResponseStatusException(HttpStatus.NO_CONTENT, "La API no devolvió ningún dato");
+        }
+        if (timeline.getDays() == null) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se encontró información diaria del clima");
+        }
+        if (timeline.getDays().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NO_CONTENT, "No hay datos de días disponibles");
+        }
+
+        timeline.setFetchedAt(System.currentTimeMillis());
+        // Todo se guarda bajo el id canónico de la respuesta y el alias pedido queda apuntando a él
+        String locationId = locationResolver.learn(location, timeline);
+        String keyCache = timelineKey(locationId);
+        // El timeline y su meta (para If-None-Match / If-Modified-Since) se escriben juntos y con el token del lease.
+        // Redis los conserva un margen tras el TTL duro solo para servirlos si la API está saturada
+        Map<String, Object> values = new HashMap<>();
+        values.put(keyCache, timeline);
+        if (hasMeta(timeline)) {
+            values.put(metaKey(locationId), TimelineMetaDTO.of(timeline).toText());
+        }
+        if (!cacheServiceObj.saveFenced(lease, keyCache, values, hardTtlSeconds + staleGraceSeconds)) {
+            // Un lease más nuevo ya guardó su resultado: esta petición usa el suyo y no toca el caché
+            return timeline;
+        }
+        // Los mismos días quedan también por separado para las consultas por rango
+        saveDays(daysKey(locationId), byEpochDay(timeline.getDays()), timeline.getFetchedAt());
+        logger.debug("Timeline guardado en cache: {} ({} días)", keyCache, timeline.getDays().size());
+        return timeline;
+    }
+
+    private static boolean hasMeta(LocationTimelineDTO timeline) {
+        List<TimelineDayDTO> days = timeline.getDays();
+        return timeline.getContentHash() != null && days != null && !days.isEmpty()
+                && days.get(0).getDatetime() != null && days.get(days.size() - 1).getDatetime() != null;
+    }
+
+    // Proyección del timeline al DTO del endpoint de hoy
+    static TodayWeatherDTO toTodayWeather(LocationTimelineDTO timeline, String country) {
+        TodayWeatherDTO responseDTO = new TodayWeatherDTO();
+
+        // Extraemos la información del clima con validación
+        responseDTO.setCity(Objects.requireNonNullElse(timeline.getResolvedAddress(), "Desconocido"));
+        responseDTO.setCountry(country);
+        responseDTO.setDescription(Objects.requireNonNullElse(timeline.getDescription(), "Sin descripción"));
+
+        // Información del día de hoy
+        TimelineDayDTO today = timeline.getDays().get(0);
+
+        responseDTO.setTemp(today.getTemp());
+        responseDTO.setTempMax(today.getTempmax());
+        responseDTO.setTempMin(today.getTempmin());
+        responseDTO.setHumidity(today.getHumidity());
+        responseDTO.setConditions(Objects.requireNonNullElse(today.getConditions(), "Desconocido"));
+        responseDTO.setIcon(Objects.requireNonNullElse(today.getIcon(), ""));
+        responseDTO.setSunrise(Objects.requireNonNullElse(today.getSunrise(), ""));
+        responseDTO.setSunset(Objects.requireNonNullElse(today.getSunset(), ""));
+        return responseDTO;
+    }
+
+    // Proyección del timeline al DTO del endpoint por días
+    static List<MonthWeatherDTO> toMonthWeather(LocationTimelineDTO timeline) {
+        return toMonthWeather(timeline.getDays());
+    }
+
+    private static List<MonthWeatherDTO> toMonthWeather(List<TimelineDayDTO> timelineDays) {
+        List<MonthWeatherDTO> days = new ArrayList<>(timelineDays.size());
+        for (TimelineDayDTO day : timelineDays) {
+            MonthWeatherDTO dto = new MonthWeatherDTO();
+            dto.setDatetime(day.getDatetime());
+            dto.setTempmax(day.getTempmax());
+            dto.setTempmin(day.getTempmin());
+            dto.setTemp(day.getTemp());
+            dto.setHumidity(day.getHumidity());
+            dto.setWindspeed(day.getWindspeed());
+            dto.setConditions(day.getConditions());
+            dto.setDescription(day.getDescription());
+            dto.setIcon(day.getIcon());
+            days.add(dto);
         }
+        return days;
     }
 
     public void clearCache(String city, String country) {
@@ -226,8 +1116,13 @@ public class WeatherService {
             if (city == null || city.trim().isEmpty() || country == null || country.trim().isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La ciudad y el país no pueden ser nulos o vacíos");
             }
-            String keyCache = city + "," + country;
-            cacheServiceObj.delete(keyCache);
+            // CacheService propaga la invalidación del L1 al resto de nodos. También se borra el alias,
+            // por si apuntaba a otra ubicación: la siguiente petición lo vuelve a aprender de la API externa
+            ResolvedLocation location = locationResolver.resolve(city, country);
+            cacheServiceObj.delete(timelineKey(location.id()));
+            cacheServiceObj.delete(daysKey(location.id()));
+            cacheServiceObj.delete(metaKey(location.id()));
+            locationResolver.forget(location);
         } catch (ResponseStatusException e) {
             throw e; // Re-lanzamos las excepciones de validación
         } catch (Exception e) {
@@ -0,0 +1,16 @@
+package com.jalveo.weatherAPI.service.codec;
+
+import java.io.IOException;
+
+// Formato binario de los valores guardados en Redis.
+// Cada valor empieza con un byte de versión para poder cambiar de formato sin romper lo ya cacheado.
+public interface CacheCodec {
+
+    byte version();
+
+    // Devuelve el valor codificado, incluido el byte de versión
+    byte[] encode(Object value) throws IOException;
+
+    // Recibe el valor completo (con el byte de versión) y lo decodifica directamente al tipo pedido
+    <T> T decode(byte[] data, Class<T> type) throws IOException;
+}
@@ -0,0 +1,41 @@
+package com.jalveo.weatherAPI.service.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Codec basado en Jackson sin pistas de tipo: el tipo lo indica quien lee, así que se decodifica una sola vez
+abstract class JacksonCacheCodec implements CacheCodec {
+
+    private final byte version;
+    private final ObjectMapper objectMapper;
+
+    JacksonCacheCodec(byte version, ObjectMapper objectMapper) {
+        this.version = version;
+        this.objectMapper = objectMapper
+                .registerModule(new JavaTimeModule())
+                // Campos nuevos en un despliegue no deben romper a los nodos con la versión anterior
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public byte version() {
+        return version;
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        out.write(version);
+        objectMapper.writeValue(out, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> type) throws IOException {
+        return objectMapper.readValue(data, 1, data.length - 1, type);
+    }
+}
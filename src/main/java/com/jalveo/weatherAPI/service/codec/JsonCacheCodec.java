@@ -0,0 +1,13 @@
+package com.jalveo.weatherAPI.service.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// JSON plano sin pistas de tipo; útil para inspeccionar Redis a mano o como vuelta atrás
+public class JsonCacheCodec extends JacksonCacheCodec {
+
+    public static final byte VERSION = 2;
+
+    public JsonCacheCodec() {
+        super(VERSION, new ObjectMapper());
+    }
+}
@@ -0,0 +1,18 @@
+package com.jalveo.weatherAPI.service.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+// Smile (JSON binario): nombres de campo y valores repetidos (conditions, icon) se escriben una vez y luego por referencia
+public class SmileCacheCodec extends JacksonCacheCodec {
+
+    public static final byte VERSION = 1;
+
+    public SmileCacheCodec() {
+        super(VERSION, new ObjectMapper(SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build()));
+    }
+}
@@ -0,0 +1,44 @@
+package com.jalveo.weatherAPI.service.codec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+// Escribe con el codec configurado y lee con el que indique el byte de versión de cada valor.
+// Así se puede cambiar weather.cache.codec en caliente: los valores antiguos se siguen leyendo hasta que expiran
+@Component
+public class VersionedCacheCodec {
+
+    private final CacheCodec[] byVersion = new CacheCodec[256];
+    private final CacheCodec writer;
+
+    public VersionedCacheCodec(@Value("${weather.cache.codec:smile}") String codecName) {
+        List<CacheCodec> codecs = List.of(new SmileCacheCodec(), new JsonCacheCodec());
+        for (CacheCodec codec : codecs) {
+            byVersion[codec.version() & 0xFF] = codec;
+        }
+        this.writer = switch (codecName.toLowerCase()) {
+            case "smile" -> byVersion[SmileCacheCodec.VERSION];
+            case "json" -> byVersion[JsonCacheCodec.VERSION];
+            default -> throw new IllegalArgumentException("Codec de caché desconocido: " + codecName);
+        };
+    }
+
+    public byte[] encode(Object value) throws IOException {
+        return writer.encode(value);
+    }
+
+    // Devuelve null si el valor está en un formato que este nodo no conoce (se trata como fallo de caché)
+    public <T> T decode(byte[] data, Class<T> type) throws IOException {
+        if (data == null || data.length < 2) {
+            return null;
+        }
+        CacheCodec codec = byVersion[data[0] & 0xFF];
+        if (codec == null) {
+            return null;
+        }
+        return codec.decode(data, type);
+    }
+}
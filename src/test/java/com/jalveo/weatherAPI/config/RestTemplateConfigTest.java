@@ -0,0 +1,71 @@
+package com.jalveo.weatherAPI.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RestTemplateConfigTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void idlePooledConnectionIsClosedAfterIdleTimeout() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "connectTimeout", 1000);
+        ReflectionTestUtils.setField(config, "readTimeout", 1000);
+        ReflectionTestUtils.setField(config, "maxTotal", 5);
+        ReflectionTestUtils.setField(config, "maxPerRoute", 5);
+        ReflectionTestUtils.setField(config, "leaseTimeout", 1000);
+        ReflectionTestUtils.setField(config, "idleTimeout", 200);
+        ClientHttpRequestFactory factory = config.upstreamRequestFactory(registry);
+
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/timeline");
+        try (ClientHttpResponse response = factory.createRequest(uri, HttpMethod.GET).execute()) {
+            response.getBody().readAllBytes();
+        }
+        // La conexión vuelve al pool como keep-alive
+        assertEquals(1.0, availableConnections());
+
+        // El hilo de evicción revisa cada idle-timeout y cierra las que llevan ese tiempo sin usarse
+        long deadline = System.currentTimeMillis() + 5000;
+        while (availableConnections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0.0, availableConnections());
+        ((DisposableBean) factory).destroy();
+    }
+
+    private double availableConnections() {
+        return registry.get("httpcomponents.httpclient.pool.total.connections").tag("state", "available").gauge().value();
+    }
+}
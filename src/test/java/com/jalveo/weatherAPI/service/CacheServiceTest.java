@@ -0,0 +1,158 @@
+package com.jalveo.weatherAPI.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.service.codec.VersionedCacheCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheServiceTest {
+
+    private static final String KEY = "weather:timeline:madrid:es";
+
+    private RedisTemplate<String, byte[]> redisTemplate;
+    private ValueOperations<String, byte[]> valueOps;
+    private final Cache<String, Object> localCache = Caffeine.newBuilder().build();
+    private final VersionedCacheCodec codec = new VersionedCacheCodec("smile");
+    private CacheService cacheService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        valueOps = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+        RedisCircuitBreaker breaker = new RedisCircuitBreaker(50, 10, 0.5, 0.5, 200, 5000, 3, new SimpleMeterRegistry());
+        cacheService = new CacheService(redisTemplate, codec, localCache, breaker, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void l1HitSkipsRedis() {
+        LocationTimelineDTO timeline = new LocationTimelineDTO();
+        timeline.setResolvedAddress("Madrid, España");
+        cacheService.save(KEY, timeline, 60);
+
+        assertSame(timeline, cacheService.get(KEY, LocationTimelineDTO.class).orElseThrow());
+        verify(valueOps, never()).get(anyString());
+    }
+
+    @Test
+    void redisHitFillsL1SoTheNextReadStaysLocal() throws Exception {
+        LocationTimelineDTO timeline = new LocationTimelineDTO();
+        timeline.setResolvedAddress("Madrid, España");
+        when(valueOps.get(KEY)).thenReturn(codec.encode(timeline));
+
+        assertEquals(timeline, cacheService.get(KEY, LocationTimelineDTO.class).orElseThrow());
+        assertEquals(timeline, cacheService.get(KEY, LocationTimelineDTO.class).orElseThrow());
+
+        verify(valueOps, times(1)).get(KEY);
+    }
+
+    @Test
+    void deleteEvictsLocallyAndPublishesInvalidation() {
+        cacheService.saveText(KEY, "x", 60);
+
+        cacheService.delete(KEY);
+
+        assertFalse(cacheService.peekLocal(KEY, String.class).isPresent());
+        verify(redisTemplate).delete(KEY);
+        // El resto de nodos recibe la llave en el canal de invalidación
+        ArgumentCaptor<byte[]> body = ArgumentCaptor.forClass(byte[].class);
+        verify(redisTemplate).convertAndSend(eq(CacheService.INVALIDATION_CHANNEL), body.capture());
+        assertArrayEquals(KEY.getBytes(StandardCharsets.UTF_8), body.getValue());
+    }
+
+    @Test
+    void receivedInvalidationEvictsOnlyThatLocalEntry() {
+        cacheService.saveText(KEY, "x", 60);
+        cacheService.saveText("weather:timeline:lima:pe", "y", 60);
+
+        // Mensaje publicado por el delete de otro nodo
+        cacheService.onMessage(new DefaultMessage(CacheService.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                KEY.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertFalse(cacheService.peekLocal(KEY, String.class).isPresent());
+        assertTrue(cacheService.peekLocal("weather:timeline:lima:pe", String.class).isPresent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fencedWriteRejectedByANewerLeaseLeavesNothingInL1() {
+        cacheService.saveText(KEY, "viejo", 60);
+        // El script encontró un token mayor que 3 en weather:fence:<llave>
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(Object[].class))).thenReturn(0L);
+
+        boolean written = cacheService.saveFenced(new FetchLease(KEY, 3L), KEY, Map.of(KEY, "nuevo"), 60);
+
+        assertFalse(written);
+        assertFalse(cacheService.peekLocal(KEY, String.class).isPresent());
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(ArgumentMatchers.<RedisScript<Long>>any(), keys.capture(), any(Object[].class));
+        assertEquals(List.of("weather:fence:" + KEY, KEY), keys.getValue());
+    }
+
+    @Test
+    void fencedWriteAcceptedFillsL1() {
+        when(redisTemplate.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), any(Object[].class))).thenReturn(1L);
+
+        assertTrue(cacheService.saveFenced(new FetchLease(KEY, 3L), KEY, Map.of(KEY, "nuevo"), 60));
+        assertEquals("nuevo", cacheService.peekLocal(KEY, String.class).orElseThrow());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void hashWriteDropsFieldsOutsideTheWindowButKeepsTheOnesBeingWritten() {
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOps);
+        when(hashOps.keys("weather:days:madrid")).thenReturn(Set.of("100", "102", "105"));
+
+        cacheService.saveHashFields("weather:days:madrid", Map.of("100", "a", "111", "b"), 60,
+                field -> Long.parseLong(field) >= 105);
+
+        // 100 se está escribiendo ahora; solo sobra el que quedó fuera de la ventana de una escritura anterior
+        verify(hashOps).delete("weather:days:madrid", "102");
+        verify(hashOps).putAll(eq("weather:days:madrid"), any());
+        verify(redisTemplate).expire("weather:days:madrid", Duration.ofSeconds(60));
+    }
+
+    @Test
+    void subscriberRegistersCacheServiceOnTheInvalidationChannel() {
+        RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+
+        new CacheInvalidationSubscriber(container, cacheService).subscribe();
+
+        verify(container).addMessageListener(cacheService, new ChannelTopic(CacheService.INVALIDATION_CHANNEL));
+    }
+}
@@ -0,0 +1,40 @@
+package com.jalveo.weatherAPI.service;
+
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LocationResolverTest {
+
+    @Test
+    void aliasFoldsCaseAccentsPunctuationAndCountryNames() {
+        assertEquals("madrid:es", LocationResolver.alias("Madrid", "ES"));
+        assertEquals("madrid:es", LocationResolver.alias("  madrid ", "Spain"));
+        assertEquals("madrid:es", LocationResolver.alias("MADRID", "España"));
+        assertEquals("bogota:co", LocationResolver.alias("Bogotá", "COL"));
+        assertEquals("san sebastian de los reyes:es", LocationResolver.alias("San Sebastián-de  los Reyes", "es"));
+        assertEquals("new york:us", LocationResolver.alias("New York", "EE.UU."));
+        assertEquals("new york:us", LocationResolver.alias("new york", "United States"));
+        // Un país desconocido se queda normalizado tal cual
+        assertEquals("springfield:springfield county", LocationResolver.alias("Springfield", "Springfield County"));
+    }
+
+    @Test
+    void canonicalIdPrefersRoundedCoordinatesOverResolvedAddress() {
+        LocationTimelineDTO timeline = new LocationTimelineDTO();
+        timeline.setResolvedAddress("Madrid, Comunidad de Madrid, España");
+        assertEquals("madrid-comunidad-de-madrid-espana", LocationResolver.canonicalId(timeline));
+
+        timeline.setLatitude(40.4167);
+        timeline.setLongitude(-3.7033);
+        assertEquals("40.42,-3.70", LocationResolver.canonicalId(timeline));
+
+        timeline.setLatitude(-0.001);
+        timeline.setLongitude(0.0);
+        assertEquals("0.00,0.00", LocationResolver.canonicalId(timeline));
+
+        assertNull(LocationResolver.canonicalId(new LocationTimelineDTO()));
+    }
+}
@@ -0,0 +1,56 @@
+package com.jalveo.weatherAPI.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisCircuitBreakerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // Ventana de 10 llamadas, se abre con el 50% de errores o de llamadas lentas (>= 100 ms) y prueba tras 50 ms
+    private final RedisCircuitBreaker breaker = new RedisCircuitBreaker(10, 4, 0.5, 0.5, 100, 50, 2, registry);
+
+    @Test
+    void opensOnErrorRateAndShortCircuitsUntilProbesSucceed() throws Exception {
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        breaker.onError();
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+        breaker.onError();
+
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(60);
+        // Semiabierto: solo pasan dos llamadas de prueba
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(RedisCircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(1.0, registry.get("weather.cache.redis.breaker.transitions").tag("to", "closed").counter().count());
+        assertEquals(2.0, registry.get("weather.cache.redis.breaker.rejected").counter().count());
+    }
+
+    @Test
+    void slowCallsOpenTheCircuitAndAFailedProbeReopensIt() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        breaker.onError();
+
+        assertEquals(RedisCircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,54 @@
+package com.jalveo.weatherAPI.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseBodyCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ResponseBodyCache cache = new ResponseBodyCache(JsonMapper.builder().build(), registry, 1 << 20, 60);
+
+    @Test
+    void fillSerializesOnceAndStoresEveryEncoding() throws Exception {
+        Map<String, Object> body = Map.of("city", "Madrid, España", "temp", 9.0);
+
+        byte[] identity = cache.put("\"abc\"", body, ResponseBodyCache.IDENTITY);
+
+        assertArrayEquals(identity, cache.get("\"abc\"", ResponseBodyCache.IDENTITY).orElseThrow());
+        byte[] gzip = cache.get("\"abc\"", ResponseBodyCache.GZIP).orElseThrow();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(identity, in.readAllBytes());
+        }
+        assertEquals(2.0, registry.get("weather.response.cache.gets").tag("result", "hit").counters()
+                .stream().mapToDouble(counter -> counter.count()).sum());
+    }
+
+    @Test
+    void bodyWithoutEtagIsServedButNotStored() {
+        cache.put(null, Map.of("temp", 9.0), ResponseBodyCache.GZIP);
+
+        assertFalse(cache.get("null", ResponseBodyCache.GZIP).isPresent());
+    }
+
+    @Test
+    void eachEncodingHasItsOwnEtagButRevalidatesTheSameContent() {
+        ResponseValidators validators = new ResponseValidators("\"abc\"", 0, 60, 60);
+
+        assertEquals("\"abc-gzip\"", validators.etag(ResponseBodyCache.GZIP));
+        assertEquals("\"abc\"", validators.etag(ResponseBodyCache.IDENTITY));
+        assertTrue(validators.notModified(List.of("\"abc-gzip\""), -1));
+        assertTrue(validators.notModified(List.of("\"abc\""), -1));
+        assertFalse(validators.notModified(List.of("\"abd-gzip\""), -1));
+    }
+}
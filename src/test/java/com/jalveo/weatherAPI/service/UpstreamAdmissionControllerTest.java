@@ -0,0 +1,73 @@
+package com.jalveo.weatherAPI.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamAdmissionControllerTest {
+
+    @Test
+    void waitingUserRequestsGoBeforeBackgroundWork() throws Exception {
+        // 20 peticiones/s sin ráfaga: tras la primera, cada token tarda 50 ms
+        UpstreamAdmissionController admission = new UpstreamAdmissionController(20, 1, 0, 0.8, 10, 2000, new SimpleMeterRegistry());
+        admission.acquire(UpstreamPriority.USER, 1);
+        List<UpstreamPriority> order = new CopyOnWriteArrayList<>();
+
+        Thread warmup = new Thread(() -> {
+            admission.acquire(UpstreamPriority.WARMUP, 1);
+            order.add(UpstreamPriority.WARMUP);
+        });
+        Thread user = new Thread(() -> {
+            admission.acquire(UpstreamPriority.USER, 1);
+            order.add(UpstreamPriority.USER);
+        });
+        // Cada hilo entra en la cola antes de arrancar el siguiente (con una sola CPU un sleep fijo no lo garantiza)
+        warmup.start();
+        awaitQueued(warmup);
+        user.start();
+        awaitQueued(user);
+        warmup.join(TimeUnit.SECONDS.toMillis(2));
+        user.join(TimeUnit.SECONDS.toMillis(2));
+
+        assertEquals(List.of(UpstreamPriority.USER, UpstreamPriority.WARMUP), order);
+    }
+
+    private static void awaitQueued(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.TIMED_WAITING && thread.getState() != Thread.State.WAITING
+                && thread.isAlive()) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void upstream429PausesAdmissionAndRejectsWithRetryAfter() {
+        UpstreamAdmissionController admission = new UpstreamAdmissionController(100, 10, 0, 0.8, 10, 50, new SimpleMeterRegistry());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "30");
+
+        admission.onResponse(429, headers);
+        UpstreamSaturatedException e = assertThrows(UpstreamSaturatedException.class,
+                () -> admission.acquire(UpstreamPriority.USER, 1));
+
+        assertEquals(503, e.getStatusCode().value());
+        assertTrue(e.getRetryAfterSeconds() > 25 && e.getRetryAfterSeconds() <= 30);
+        assertEquals(Long.toString(e.getRetryAfterSeconds()), e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void backgroundWorkCannotSpendTheBudgetReservedForUsers() {
+        UpstreamAdmissionController admission = new UpstreamAdmissionController(100, 10, 20, 0.5, 10, 50, new SimpleMeterRegistry());
+
+        assertThrows(UpstreamSaturatedException.class, () -> admission.acquire(UpstreamPriority.WARMUP, 15));
+        admission.acquire(UpstreamPriority.USER, 15);
+        assertThrows(UpstreamSaturatedException.class, () -> admission.acquire(UpstreamPriority.USER, 15));
+    }
+}
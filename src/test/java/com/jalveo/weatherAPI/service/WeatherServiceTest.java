@@ -0,0 +1,645 @@
+package com.jalveo.weatherAPI.service;
+
+import com.jalveo.weatherAPI.DTOs.Cache.CachedDayDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.TimelineDayDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.TimelineMetaDTO;
+import com.jalveo.weatherAPI.DTOs.Request.LocationRequestDTO;
+import com.jalveo.weatherAPI.DTOs.Response.BatchWeatherItemDTO;
+import com.jalveo.weatherAPI.DTOs.Response.DayStatsDTO;
+import com.jalveo.weatherAPI.DTOs.Response.MonthWeatherDTO;
+import com.jalveo.weatherAPI.DTOs.Response.TodayWeatherDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WeatherServiceTest {
+
+    private static final String TIMELINE = """
+            {"resolvedAddress":"Madrid, España","description":"Soleado","days":[
+              {"datetime":"2026-02-12","tempmax":15.0,"tempmin":3.0,"temp":9.0,"humidity":40.0,
+               "windspeed":10.0,"conditions":"Clear","description":"Soleado","icon":"clear-day",
+               "sunrise":"08:20:00","sunset":"18:40:00",
+               "hours":[{"datetime":"00:00:00","temp":4.0,"stations":["LEMD"]}]}],
+             "stations":{"LEMD":{"distance":0.0}}}
+            """;
+
+    private RestTemplate restTemplate;
+    private CacheService cacheService;
+    private WeatherService weatherService;
+    private AccessFrequencyTracker accessTracker;
+    private UpstreamAdmissionController admissionController;
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final List<URI> upstreamUris = new CopyOnWriteArrayList<>();
+    private final Map<String, Object> hash = new ConcurrentHashMap<>();
+    private final Map<String, Object> cache = new ConcurrentHashMap<>();
+    private final ExecutorService batchPool = Executors.newFixedThreadPool(4);
+    private final ExecutorService upstreamPool = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        cacheService = mock(CacheService.class);
+        when(cacheService.multiGet(anyCollection(), any())).thenAnswer(invocation -> {
+            Map<String, Object> found = new HashMap<>();
+            for (String key : invocation.<Collection<String>>getArgument(0)) {
+                if (cache.containsKey(key)) {
+                    found.put(key, cache.get(key));
+                }
+            }
+            return found;
+        });
+        // Caché simulado en memoria
+        when(cacheService.get(anyString(), any())).thenAnswer(invocation ->
+                Optional.ofNullable(cache.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> cache.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(cacheService).save(anyString(), any(), anyLong());
+        when(cacheService.getText(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable((String) cache.get(invocation.<String>getArgument(0))));
+        doAnswer(invocation -> cache.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(cacheService).saveText(anyString(), anyString(), anyLong());
+        when(cacheService.saveFenced(any(), anyString(), any(), anyLong())).thenAnswer(invocation -> {
+            cache.putAll(invocation.getArgument(2));
+            return true;
+        });
+        when(cacheService.tryAcquireLease(anyString(), anyLong()))
+                .thenAnswer(invocation -> Optional.of(new FetchLease(invocation.getArgument(0), 1L)));
+        // Hash de días simulado (una sola ubicación por prueba)
+        when(cacheService.getHashFields(anyString(), anyList(), any())).thenAnswer(invocation -> {
+            Map<String, Object> found = new HashMap<>();
+            for (String field : invocation.<List<String>>getArgument(1)) {
+                if (hash.containsKey(field)) {
+                    found.put(field, hash.get(field));
+                }
+            }
+            return found;
+        });
+        doAnswer(invocation -> {
+            hash.putAll(invocation.getArgument(1));
+            return null;
+        }).when(cacheService).saveHashFields(anyString(), any(), anyLong(), any());
+
+        // Upstream simulado lento para que todas las peticiones coincidan en vuelo
+        when(restTemplate.execute(any(URI.class), eq(HttpMethod.GET), any(), any())).thenAnswer(invocation -> {
+            upstreamCalls.incrementAndGet();
+            upstreamUris.add(invocation.getArgument(0));
+            Thread.sleep(200);
+            ClientHttpResponse response = mock(ClientHttpResponse.class);
+            when(response.getBody()).thenReturn(new ByteArrayInputStream(TIMELINE.getBytes(StandardCharsets.UTF_8)));
+            ResponseExtractor<?> extractor = invocation.getArgument(3);
+            return extractor.extractData(response);
+        });
+
+        // Los refrescos en segundo plano se ejecutan en el mismo hilo para que la prueba sea determinista
+        accessTracker = new AccessFrequencyTracker(1024, 100);
+        admissionController = new UpstreamAdmissionController(1000, 1000, 0, 0.8, 100, 100, new SimpleMeterRegistry());
+        weatherService = new WeatherService(restTemplate, cacheService, new TimelineParser(new SimpleMeterRegistry()),
+                new LocationResolver(cacheService, 3600),
+                accessTracker, admissionController, Runnable::run, batchPool, upstreamPool);
+        ReflectionTestUtils.setField(weatherService, "apiKey", "test-key");
+        ReflectionTestUtils.setField(weatherService, "baseUrl", "http://localhost/timeline");
+        ReflectionTestUtils.setField(weatherService, "leaseMillis", 1000L);
+        ReflectionTestUtils.setField(weatherService, "leasePollMillis", 20L);
+        ReflectionTestUtils.setField(weatherService, "softTtlSeconds", 900L);
+        ReflectionTestUtils.setField(weatherService, "hardTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(weatherService, "batchMaxSize", 500);
+        ReflectionTestUtils.setField(weatherService, "maxRangeDays", 31);
+        ReflectionTestUtils.setField(weatherService, "timelineCost", 15L);
+        ReflectionTestUtils.setField(weatherService, "serveStaleOnSaturation", true);
+        ReflectionTestUtils.setField(weatherService, "staleGraceSeconds", 3600L);
+        ReflectionTestUtils.setField(weatherService, "projectionEnabled", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchPool.shutdownNow();
+        upstreamPool.shutdownNow();
+    }
+
+    @Test
+    void concurrentMissesForSameLocationShareOneUpstreamFetch() throws Exception {
+        int requests = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<MonthWeatherDTO>>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < requests; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return weatherService.getWeatherMonth("Madrid", "ES");
+                }));
+            }
+            start.countDown();
+
+            List<MonthWeatherDTO> first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<List<MonthWeatherDTO>> result : results) {
+                assertEquals(first, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(1, results.get(0).get().size());
+    }
+
+    @Test
+    void asyncMissesShareOneUpstreamFetchWithoutBlockingCallers() throws Exception {
+        List<CompletableFuture<TodayWeatherDTO>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            results.add(weatherService.getWeatherAsync("Madrid", "ES").thenApply(VersionedResponse::body));
+        }
+        CompletableFuture<List<MonthWeatherDTO>> days = weatherService.getWeatherMonthAsync("Madrid", "ES", null, null)
+                .thenApply(VersionedResponse::body);
+
+        // El upstream simulado tarda 200 ms: las llamadas volvieron sin esperar
+        assertFalse(results.get(0).isDone());
+        for (CompletableFuture<TodayWeatherDTO> result : results) {
+            assertEquals(15.0, result.get(5, TimeUnit.SECONDS).getTempMax());
+        }
+        assertEquals(1, days.get(5, TimeUnit.SECONDS).size());
+        assertEquals(1, upstreamCalls.get());
+
+        // Con el timeline en caché se responde en el mismo hilo
+        assertTrue(weatherService.getWeatherAsync("Madrid", "ES").isDone());
+    }
+
+    @Test
+    void asyncWaitersProjectFromTheLoadedTimelineWithoutReadingItAgain() throws Exception {
+        int requests = 8;
+        List<CompletableFuture<DayStatsDTO>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            results.add(weatherService.getDayStatsAsync("Madrid", "ES", null, null, List.of("temp")).thenApply(VersionedResponse::body));
+        }
+        for (CompletableFuture<DayStatsDTO> result : results) {
+            assertEquals(9.0, result.get(5, TimeUnit.SECONDS).getFields().get("temp").getMean());
+        }
+
+        // Una lectura por petición antes de esperar y la de la carga compartida; ninguna al completarse
+        verify(cacheService, times(requests + 1)).get(eq("weather:timeline:madrid:es"), eq(LocationTimelineDTO.class));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void asyncDayRangeFetchesTheMissingWindowOffTheCallerThread() throws Exception {
+        cacheDay(LocalDate.of(2026, 2, 11), 7.0, 0);
+
+        CompletableFuture<List<MonthWeatherDTO>> first = weatherService.getWeatherMonthAsync("Madrid", "ES",
+                LocalDate.of(2026, 2, 11), LocalDate.of(2026, 2, 12)).thenApply(VersionedResponse::body);
+        CompletableFuture<List<MonthWeatherDTO>> second = weatherService.getWeatherMonthAsync("Madrid", "ES",
+                LocalDate.of(2026, 2, 11), LocalDate.of(2026, 2, 12)).thenApply(VersionedResponse::body);
+
+        // La ventana tarda 200 ms en el pool de la API externa y ambas peticiones la comparten
+        assertFalse(first.isDone());
+        assertEquals(List.of(7.0, 9.0), first.get(5, TimeUnit.SECONDS).stream().map(MonthWeatherDTO::getTemp).toList());
+        assertEquals(first.get(), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstreamCalls.get());
+        assertTrue(upstreamUris.get(0).getPath().endsWith("/2026-02-12/2026-02-12"));
+    }
+
+    @Test
+    void todayAndDaysEndpointsShareOneTimelineFetch() {
+        TodayWeatherDTO today = weatherService.getWeather("Madrid", "ES");
+        List<MonthWeatherDTO> days = weatherService.getWeatherMonth("Madrid", "ES");
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals("Madrid, España", today.getCity());
+        assertEquals("ES", today.getCountry());
+        assertEquals(15.0, today.getTempMax());
+        assertEquals("08:20:00", today.getSunrise());
+        assertEquals(LocalDate.of(2026, 2, 12), days.get(0).getDatetime());
+        assertEquals(10.0, days.get(0).getWindspeed());
+    }
+
+    @Test
+    void upstreamRequestAsksOnlyForTheFieldsOfTheCanonicalTimeline() {
+        weatherService.getWeather("Madrid", "ES");
+
+        Map<String, String> query = UriComponentsBuilder.fromUri(upstreamUris.get(0)).build().getQueryParams().toSingleValueMap();
+        assertEquals("days", query.get("include"));
+        // Cada campo del día cacheado se pide, y nada más (sin horas, datetimeEpoch, feelslike...)
+        Set<String> dayFields = Arrays.stream(TimelineDayDTO.class.getDeclaredFields())
+                .map(Field::getName).collect(Collectors.toCollection(TreeSet::new));
+        assertEquals(dayFields, Set.of(query.get("elements").split(",")));
+    }
+
+    @Test
+    void validatorsComeFromTimelineMetaAndDifferPerEndpoint() {
+        // Sin timeline en caché no hay validadores: la primera petición siempre lleva cuerpo
+        assertTrue(weatherService.getWeatherValidators("Madrid", "ES").isEmpty());
+        weatherService.getWeather("Madrid", "ES");
+
+        ResponseValidators today = weatherService.getWeatherValidators("Madrid", "ES").orElseThrow();
+        ResponseValidators days = weatherService.getWeatherMonthValidators("Madrid", "ES", null, null).orElseThrow();
+        assertFalse(today.etag().equals(days.etag()));
+        assertTrue(today.notModified(List.of(today.etag()), -1));
+        assertTrue(today.notModified(List.of("W/" + today.etag()), -1));
+        assertFalse(today.notModified(List.of(days.etag()), -1));
+        assertTrue(today.maxAgeSeconds() > 0 && today.maxAgeSeconds() <= 900);
+
+        // Un rango fuera de los días cacheados no se puede validar sin consultar
+        assertTrue(weatherService.getWeatherMonthValidators("Madrid", "ES",
+                LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 5)).isEmpty());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void validatorsHaveNoSideEffectsAndEachRequestCountsOnce() {
+        long fetchedAt = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(20);
+        cache.put("weather:meta:madrid:es",
+                new TimelineMetaDTO("abc", fetchedAt, LocalDate.of(2026, 2, 12), LocalDate.of(2026, 2, 12)).toText());
+        cacheTimeline("weather:timeline:madrid:es", TimeUnit.MINUTES.toSeconds(20));
+
+        // Consultar los validadores no cuenta como acceso ni refresca el timeline obsoleto
+        ResponseValidators validators = weatherService.getWeatherValidators("Madrid", "ES").orElseThrow();
+        weatherService.getWeatherMonthValidators("Madrid", "ES", null, null);
+        assertEquals(0, accessTracker.estimate("weather:timeline:madrid:es"));
+        assertEquals(0, upstreamCalls.get());
+
+        // Un 304: un acceso y el refresco en segundo plano
+        weatherService.recordUse("Madrid", "ES", validators);
+        assertEquals(1, accessTracker.estimate("weather:timeline:madrid:es"));
+        assertEquals(1, upstreamCalls.get());
+
+        // Un cuerpo nuevo: el acceso lo cuenta solo la lectura del timeline
+        weatherService.getWeatherValidators("Madrid", "ES");
+        weatherService.getWeather("Madrid", "ES");
+        assertEquals(1, accessTracker.estimate("weather:timeline:madrid-espana"));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void bodyCarriesTheValidatorsOfItsOwnTimelineWhenARefreshLandsInBetween() {
+        weatherService.getWeather("Madrid", "ES");
+        ResponseValidators before = weatherService.getWeatherValidators("Madrid", "ES").orElseThrow();
+
+        // Otro nodo refresca el timeline después de consultar los validadores y antes de leer el cuerpo
+        TimelineDayDTO day = new TimelineDayDTO();
+        day.setDatetime(LocalDate.of(2026, 2, 12));
+        day.setTemp(12.0);
+        LocationTimelineDTO refreshed = new LocationTimelineDTO();
+        refreshed.setResolvedAddress("Madrid, España");
+        refreshed.setContentHash("refreshed");
+        refreshed.setDays(List.of(day));
+        refreshed.setFetchedAt(before.lastModified() + 1);
+        cache.put("weather:timeline:madrid-espana", refreshed);
+
+        VersionedResponse<TodayWeatherDTO> response = weatherService.getWeatherResponse("Madrid", "ES");
+
+        assertEquals(12.0, response.body().getTemp());
+        ResponseValidators validators = response.validators().orElseThrow();
+        assertNotEquals(before.etag(), validators.etag());
+        assertEquals(refreshed.getFetchedAt(), validators.lastModified());
+        // Son los mismos que se calculan desde la meta de esa versión; el max-age sale del reloj y puede cambiar de segundo
+        cache.put("weather:meta:madrid-espana", TimelineMetaDTO.of(refreshed).toText());
+        ResponseValidators fromMeta = weatherService.getWeatherValidators("Madrid", "ES").orElseThrow();
+        assertEquals(validators.etag(), fromMeta.etag());
+        assertEquals(validators.lastModified(), fromMeta.lastModified());
+        assertEquals(validators.staleWhileRevalidateSeconds(), fromMeta.staleWhileRevalidateSeconds());
+        assertTrue(validators.maxAgeSeconds() - fromMeta.maxAgeSeconds() <= 1);
+    }
+
+    @Test
+    void rangeFromTheDaysHashIsValidatedOnlyWhenItsDaysMatchTheMeta() {
+        weatherService.getWeather("Madrid", "ES");
+        LocalDate day = LocalDate.of(2026, 2, 12);
+
+        // Los días del hash se escribieron con el timeline que describe la meta
+        VersionedResponse<List<MonthWeatherDTO>> range = weatherService.getWeatherMonthResponse("Madrid", "ES", day, day);
+        assertEquals(weatherService.getWeatherMonthValidators("Madrid", "ES", day, day), range.validators());
+        assertTrue(range.validators().isPresent());
+
+        // Un día de otra consulta: el cuerpo ya no es la versión de la meta
+        cacheDay(day, 7.0, 60);
+        range = weatherService.getWeatherMonthResponse("Madrid", "ES", day, day);
+        assertEquals(7.0, range.body().get(0).getTemp());
+        assertTrue(range.validators().isEmpty());
+    }
+
+    @Test
+    void spellingVariantsShareTheCanonicalTimeline() {
+        weatherService.getWeather("Madrid", "ES");
+        // Misma variante tras normalizar: ni siquiera hace falta el índice de alias
+        weatherService.getWeather("  MADRID ", "Spain");
+        assertEquals(1, upstreamCalls.get());
+
+        // Variante nueva: una consulta para aprender a qué ubicación canónica apunta y después comparte caché
+        TodayWeatherDTO today = weatherService.getWeather("Madrid, Comunidad de Madrid", "España");
+        weatherService.getWeather("madrid comunidad de madrid", "es");
+        weatherService.getWeatherMonth("Madrid (Comunidad de Madrid)", "ESP");
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals("Madrid, España", today.getCity());
+        assertEquals("madrid-espana", cache.get("weather:alias:madrid comunidad de madrid:es"));
+        assertTrue(cache.containsKey("weather:timeline:madrid-espana"));
+        assertFalse(cache.containsKey("weather:timeline:madrid:es"));
+    }
+
+    @Test
+    void waitsForValueFilledByLeaseHolderOnAnotherNode() {
+        // Otro nodo tiene el lease: este nodo sondea el caché hasta que aparece el valor
+        when(cacheService.tryAcquireLease(anyString(), anyLong())).thenReturn(Optional.empty());
+        when(cacheService.get(anyString(), any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(timeline(0)));
+
+        List<MonthWeatherDTO> result = weatherService.getWeatherMonth("Madrid", "ES");
+
+        assertEquals(5.0, result.get(0).getTemp());
+        assertEquals(0, upstreamCalls.get());
+    }
+
+    @Test
+    void followerTakesTheLeaseWhenTheHolderGivesUpWithoutAValue() {
+        // El dueño del lease falla y lo suelta: no hace falta esperar a que caduque para ir a la API
+        ReflectionTestUtils.setField(weatherService, "leaseMillis", 60_000L);
+        when(cacheService.tryAcquireLease(anyString(), anyLong()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new FetchLease("weather:timeline:madrid:es", 7L)));
+        long start = System.nanoTime();
+
+        weatherService.getWeather("Madrid", "ES");
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1, upstreamCalls.get());
+        verify(cacheService).saveFenced(argThat(lease -> lease.token() == 7L), eq("weather:timeline:madrid-espana"), any(), anyLong());
+    }
+
+    @Test
+    void resultOfAnExpiredLeaseDoesNotOverwriteTheNewerOne() {
+        // Otro nodo tomó el lease después y ya escribió: el token de este nodo es más viejo
+        doReturn(false).when(cacheService).saveFenced(any(), anyString(), any(), anyLong());
+
+        TodayWeatherDTO today = weatherService.getWeather("Madrid", "ES");
+
+        assertEquals("Madrid, España", today.getCity());
+        assertFalse(cache.containsKey("weather:timeline:madrid-espana"));
+        assertTrue(hash.isEmpty());
+    }
+
+    @Test
+    void backgroundRefreshAndConcurrentMissShareOneFlightWithoutWaitingOnTheLease() throws Exception {
+        // Un solo lease por llave, como en Redis; el primero tarda en concederse para que la petición llegue entre medias
+        AtomicBoolean held = new AtomicBoolean();
+        AtomicBoolean first = new AtomicBoolean(true);
+        when(cacheService.tryAcquireLease(anyString(), anyLong())).thenAnswer(invocation -> {
+            if (!held.compareAndSet(false, true)) {
+                return Optional.empty();
+            }
+            if (first.getAndSet(false)) {
+                Thread.sleep(150);
+            }
+            return Optional.of(new FetchLease(invocation.getArgument(0), 2L));
+        });
+        doAnswer(invocation -> {
+            held.set(false);
+            return null;
+        }).when(cacheService).releaseLease(any());
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> refresh = pool.submit(() -> weatherService.refreshIfStale("Madrid", "ES"));
+            Thread.sleep(50);
+            long start = System.nanoTime();
+            Future<TodayWeatherDTO> miss = pool.submit(() -> weatherService.getWeather("Madrid", "ES"));
+
+            // Sin esperar el leaseMillis (1 s) a un valor que solo podía llegar de la propia petición
+            assertEquals(15.0, miss.get(5, TimeUnit.SECONDS).getTempMax());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 900);
+            assertTrue(refresh.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, upstreamCalls.get());
+        verify(cacheService, never()).saveFenced(argThat(lease -> lease.token() == FetchLease.UNFENCED), anyString(), any(), anyLong());
+        assertTrue(cache.containsKey("weather:timeline:madrid-espana"));
+    }
+
+    @Test
+    void staleEntryIsServedImmediatelyAndRefreshedInBackground() {
+        cacheTimeline("weather:timeline:madrid:es", TimeUnit.MINUTES.toSeconds(20));
+
+        TodayWeatherDTO today = weatherService.getWeather("Madrid", "ES");
+
+        // Se devuelve lo obsoleto y el refresco deja el timeline nuevo en caché
+        assertEquals(5.0, today.getTemp());
+        assertEquals(1, upstreamCalls.get());
+        // El refresco aprende el id canónico de la respuesta y deja el alias apuntando a él
+        LocationTimelineDTO refreshed = (LocationTimelineDTO) cache.get("weather:timeline:madrid-espana");
+        assertEquals(9.0, refreshed.getDays().get(0).getTemp());
+        assertEquals("madrid-espana", cache.get("weather:alias:madrid:es"));
+    }
+
+    @Test
+    void entryPastHardTtlBlocksOnUpstream() {
+        cacheTimeline("weather:timeline:madrid:es", TimeUnit.HOURS.toSeconds(2));
+
+        TodayWeatherDTO today = weatherService.getWeather("Madrid", "ES");
+
+        assertEquals(9.0, today.getTemp());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void batchResolvesHitsFromCacheAndMissesUpstreamWithPerItemStatus() {
+        cacheTimeline("weather:timeline:paris:fr", 0);
+
+        List<BatchWeatherItemDTO> items = weatherService.getWeatherBatch(List.of(
+                new LocationRequestDTO("Paris", "FR"),
+                new LocationRequestDTO("Madrid", "ES"),
+                new LocationRequestDTO("", "ES")));
+
+        assertEquals(3, items.size());
+        assertEquals(200, items.get(0).getStatus());
+        assertEquals(5.0, items.get(0).getWeather().getTemp());
+        assertEquals(200, items.get(1).getStatus());
+        assertEquals(9.0, items.get(1).getWeather().getTemp());
+        assertEquals(400, items.get(2).getStatus());
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void dayStatsAggregateRequestedRangeFromColumnarSeries() {
+        LocationTimelineDTO timeline = new LocationTimelineDTO();
+        List<TimelineDayDTO> days = new ArrayList<>();
+        double[] temps = {10.0, 14.0, 12.0, 18.0, 16.0};
+        String[] conditions = {"Clear", "Rain", "Clear", "Clear", "Rain"};
+        for (int i = 0; i < temps.length; i++) {
+            TimelineDayDTO day = new TimelineDayDTO();
+            day.setDatetime(LocalDate.of(2026, 2, 12).plusDays(i));
+            day.setTemp(temps[i]);
+            day.setConditions(conditions[i]);
+            days.add(day);
+        }
+        timeline.setDays(days);
+        timeline.setFetchedAt(System.currentTimeMillis());
+        cache.put("weather:timeline:madrid:es", timeline);
+
+        DayStatsDTO stats = weatherService.getDayStats("Madrid", "ES",
+                LocalDate.of(2026, 2, 13), LocalDate.of(2026, 2, 16), List.of("temp", "conditions"));
+
+        assertEquals(4, stats.getDays());
+        assertEquals(LocalDate.of(2026, 2, 13), stats.getFrom());
+        assertEquals(LocalDate.of(2026, 2, 16), stats.getTo());
+        assertEquals(12.0, stats.getFields().get("temp").getMin());
+        assertEquals(18.0, stats.getFields().get("temp").getMax());
+        assertEquals(15.0, stats.getFields().get("temp").getMean());
+        assertEquals(15.0, stats.getFields().get("temp").getP50());
+        assertEquals(Map.of("Clear", 2, "Rain", 2), stats.getConditions());
+        assertNull(stats.getIcons());
+
+        // La vista columnar se reutiliza mientras el timeline siga en caché
+        assertSame(timeline.getDaySeries(), timeline.getDaySeries());
+        weatherService.getDayStats("Madrid", "ES", null, null, null);
+        assertEquals(0, upstreamCalls.get());
+    }
+
+    @Test
+    void dayRangeReadsCachedDaysAndFetchesOnlyTheMissingWindow() {
+        cacheDay(LocalDate.of(2026, 2, 11), 7.0, 0);
+
+        List<MonthWeatherDTO> days = weatherService.getWeatherMonth("Madrid", "ES",
+                LocalDate.of(2026, 2, 11), LocalDate.of(2026, 2, 12));
+
+        assertEquals(2, days.size());
+        assertEquals(7.0, days.get(0).getTemp());
+        assertEquals(9.0, days.get(1).getTemp());
+        // Solo se pidió el día que faltaba y quedó en el hash para la siguiente consulta
+        assertEquals(1, upstreamCalls.get());
+        assertTrue(upstreamUris.get(0).getPath().endsWith("/2026-02-12/2026-02-12"));
+        // La ventana solo alimenta /days y las estadísticas: sin sunrise ni sunset
+        assertFalse(upstreamUris.get(0).getQuery().contains("sunrise"));
+        assertTrue(hash.containsKey(Long.toString(LocalDate.of(2026, 2, 12).toEpochDay())));
+
+        weatherService.getWeatherMonth("Madrid", "ES", LocalDate.of(2026, 2, 11), LocalDate.of(2026, 2, 12));
+        assertEquals(1, upstreamCalls.get());
+    }
+
+    @Test
+    void dayOlderThanTheHardTtlIsFetchedAgainInsteadOfServed() {
+        // El hash se renovó con escrituras posteriores, pero este día se pidió hace dos horas
+        cacheDay(LocalDate.of(2026, 2, 12), 7.0, TimeUnit.HOURS.toSeconds(2));
+
+        List<MonthWeatherDTO> days = weatherService.getWeatherMonth("Madrid", "ES",
+                LocalDate.of(2026, 2, 12), LocalDate.of(2026, 2, 12));
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(9.0, days.get(0).getTemp());
+        CachedDayDTO saved = (CachedDayDTO) hash.get(Long.toString(LocalDate.of(2026, 2, 12).toEpochDay()));
+        assertEquals(9.0, saved.getDay().getTemp());
+        assertTrue(System.currentTimeMillis() - saved.getFetchedAt() < TimeUnit.MINUTES.toMillis(1));
+    }
+
+    @Test
+    void hotLocationsAreRefreshedBeforeExpiryAndColdOnesAreLeftAlone() {
+        cacheTimeline("weather:timeline:madrid:es", TimeUnit.MINUTES.toSeconds(20));
+        cacheTimeline("weather:timeline:lima:pe", TimeUnit.MINUTES.toSeconds(20));
+        // Madrid es popular; Lima se pidió una vez
+        for (int i = 0; i < 20; i++) {
+            accessTracker.record("weather:timeline:madrid:es", "Madrid", "ES");
+        }
+        accessTracker.record("weather:timeline:lima:pe", "Lima", "PE");
+
+        HotLocationRefresher refresher = new HotLocationRefresher(weatherService, accessTracker, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(refresher, "enabled", true);
+        ReflectionTestUtils.setField(refresher, "topK", 1);
+        ReflectionTestUtils.setField(refresher, "refreshesPerMinute", 60);
+        ReflectionTestUtils.setField(refresher, "intervalMillis", 10_000L);
+        refresher.refreshHotLocations();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(9.0, ((LocationTimelineDTO) cache.get("weather:timeline:madrid-espana")).getDays().get(0).getTemp());
+        assertEquals(5.0, ((LocationTimelineDTO) cache.get("weather:timeline:lima:pe")).getDays().get(0).getTemp());
+    }
+
+    @Test
+    void saturatedUpstreamServesTimelinePastHardTtlInsteadOfFailing() {
+        cacheTimeline("weather:timeline:madrid:es", TimeUnit.HOURS.toSeconds(2));
+        // La API respondió 429 con Retry-After: el control de admisión queda en pausa
+        admissionController.pause(30);
+
+        TodayWeatherDTO today = weatherService.getWeather("Madrid", "ES");
+
+        assertEquals(5.0, today.getTemp());
+        assertEquals(0, upstreamCalls.get());
+    }
+
+    // Timeline de un día (temp 5.0) obtenido de la API hace ageSeconds
+    private static LocationTimelineDTO timeline(long ageSeconds) {
+        TimelineDayDTO day = new TimelineDayDTO();
+        day.setTemp(5.0);
+        LocationTimelineDTO timeline = new LocationTimelineDTO();
+        timeline.setDays(List.of(day));
+        timeline.setFetchedAt(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ageSeconds));
+        return timeline;
+    }
+
+    private void cacheDay(LocalDate date, double temp, long ageSeconds) {
+        TimelineDayDTO day = new TimelineDayDTO();
+        day.setDatetime(date);
+        day.setTemp(temp);
+        hash.put(Long.toString(date.toEpochDay()),
+                new CachedDayDTO(day, System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ageSeconds)));
+    }
+
+    private void cacheTimeline(String key, long ageSeconds) {
+        cache.put(key, timeline(ageSeconds));
+    }
+}
@@ -0,0 +1,59 @@
+package com.jalveo.weatherAPI.service.codec;
+
+import com.jalveo.weatherAPI.DTOs.Cache.DaySeries;
+import com.jalveo.weatherAPI.DTOs.Cache.LocationTimelineDTO;
+import com.jalveo.weatherAPI.DTOs.Cache.TimelineDayDTO;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VersionedCacheCodecTest {
+
+    @Test
+    void smileRoundTripKeepsTimelineAndWritesVersionByte() throws Exception {
+        VersionedCacheCodec codec = new VersionedCacheCodec("smile");
+        LocationTimelineDTO timeline = timeline();
+        timeline.setDaySeries(DaySeries.from(timeline));
+
+        byte[] encoded = codec.encode(timeline);
+        LocationTimelineDTO decoded = codec.decode(encoded, LocationTimelineDTO.class);
+
+        assertEquals(SmileCacheCodec.VERSION, encoded[0]);
+        assertEquals(timeline, decoded);
+        // La vista columnar es solo de memoria: no viaja a Redis
+        assertNull(decoded.getDaySeries());
+    }
+
+    @Test
+    void valuesWrittenWithAnotherCodecAreStillReadable() throws Exception {
+        byte[] json = new VersionedCacheCodec("json").encode(timeline());
+
+        assertEquals(timeline(), new VersionedCacheCodec("smile").decode(json, LocationTimelineDTO.class));
+    }
+
+    @Test
+    void unknownFormatIsTreatedAsMiss() throws Exception {
+        // Valor escrito por el serializador JSON anterior, sin byte de versión
+        byte[] legacy = "{\"resolvedAddress\":\"Madrid\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(new VersionedCacheCodec("smile").decode(legacy, LocationTimelineDTO.class));
+    }
+
+    private static LocationTimelineDTO timeline() {
+        TimelineDayDTO day = new TimelineDayDTO();
+        day.setDatetime(LocalDate.of(2026, 2, 12));
+        day.setTemp(9.0);
+        day.setConditions("Clear");
+        day.setIcon("clear-day");
+        LocationTimelineDTO timeline = new LocationTimelineDTO();
+        timeline.setResolvedAddress("Madrid, España");
+        timeline.setDays(List.of(day, day));
+        timeline.setFetchedAt(1_770_000_000_000L);
+        return timeline;
+    }
+}